@@ -0,0 +1,104 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.h2.tools.Server;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 벤치마크용 데이터소스
+ * 외부 H2 서버 없이 돌 수 있도록 임베디드 메모리 H2를 쓰고, member 테이블을 만들어 둔다.
+ * 네트워크 왕복 비용을 보고 싶을 때는 벤치마크 JVM 안에 H2 TCP 서버를 띄워서 tcpUrl()로 접속한다.
+ * 디스크에 쓰는 비용은 build/jmh-h2 아래 파일 DB(FILE_URL)로 본다.
+ */
+public abstract class BenchmarkDataSource {
+
+    public static final String MEM_URL = "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+    public static final String FILE_URL = "jdbc:h2:file:./build/jmh-h2/bench";
+
+    private static Server tcpServer;
+
+    public static HikariDataSource create() {
+        return create(MEM_URL);
+    }
+
+    public static HikariDataSource create(String url) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+        return configure(dataSource);
+    }
+
+    // 풀 아래에 PreparedStatement 캐시를 둔다.
+    public static HikariDataSource createWithStatementCache(String url, int cacheSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        DriverManagerDataSource driverDataSource =
+                new DriverManagerDataSource(url, ConnectionConst.USERNAME, ConnectionConst.PASSWORD);
+        dataSource.setDataSource(new StatementCachingDataSource(driverDataSource, cacheSize));
+        return configure(dataSource);
+    }
+
+    // mem, file, tcp
+    public static String url(String mode) {
+        switch (mode) {
+            case "mem":
+                return MEM_URL;
+            case "file":
+                return FILE_URL;
+            case "tcp":
+                return tcpUrl();
+            default:
+                throw new IllegalArgumentException("unknown mode = " + mode);
+        }
+    }
+
+    // 같은 JVM 에 H2 TCP 서버를 띄우고 그 서버의 메모리 DB 주소를 돌려준다.
+    public static synchronized String tcpUrl() {
+        if (tcpServer == null) {
+            try {
+                tcpServer = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return "jdbc:h2:tcp://localhost:" + tcpServer.getPort() + "/mem:bench;DB_CLOSE_DELAY=-1";
+    }
+
+    private static HikariDataSource configure(HikariDataSource dataSource) {
+        dataSource.setMaximumPoolSize(10);
+        dataSource.setPoolName("BenchPool");
+        createSchema(dataSource);
+        return dataSource;
+    }
+
+    // src/main/resources/db/schema.sql 과 같은 member, id_sequence 테이블
+    public static void createSchema(HikariDataSource dataSource) {
+        try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+            stmt.execute("create table if not exists member (" +
+                    "member_id varchar(10), " +
+                    "money integer not null default 0, " +
+                    "version bigint not null default 0, " +
+                    "primary key (member_id))");
+            stmt.execute("create table if not exists id_sequence (" +
+                    "name varchar(10) primary key, " +
+                    "next_val bigint not null)");
+            // 예전에 만든 파일 DB 에는 version 컬럼이 없다.
+            stmt.execute("alter table member add column if not exists version bigint default 0 not null");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void clear(HikariDataSource dataSource) {
+        try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+            stmt.execute("delete from member");
+            stmt.execute("delete from id_sequence");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
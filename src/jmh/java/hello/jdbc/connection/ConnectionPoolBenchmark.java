@@ -0,0 +1,81 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 커넥션 획득/반납 지연 시간 - DriverManager vs HikariDataSource vs LockFreeConnectionPool
+ * 풀 크기는 ConnectionTest 와 같이 10개, 같은 JVM 에 띄운 H2 TCP 서버에 접속한다.
+ * 스레드 1, 8, 64 개로 각각 잰다. (64 스레드는 풀 크기보다 많아서 기다리는 시간이 포함된다.)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectionPoolBenchmark {
+
+    @Param({"driverManager", "hikari", "lockFree"})
+    String pool;
+
+    DataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = BenchmarkDataSource.tcpUrl();
+        switch (pool) {
+            case "driverManager":
+                dataSource = new DriverManagerDataSource(url, ConnectionConst.USERNAME, ConnectionConst.PASSWORD);
+                break;
+            case "hikari":
+                HikariDataSource hikari = new HikariDataSource();
+                hikari.setJdbcUrl(url);
+                hikari.setUsername(ConnectionConst.USERNAME);
+                hikari.setPassword(ConnectionConst.PASSWORD);
+                hikari.setMaximumPoolSize(10);
+                hikari.setPoolName("MyPool");
+                dataSource = hikari;
+                break;
+            default:
+                dataSource = new LockFreeConnectionPool(url, ConnectionConst.USERNAME, ConnectionConst.PASSWORD, 10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (dataSource instanceof AutoCloseable) {
+            ((AutoCloseable) dataSource).close();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean acquireRelease1() throws SQLException {
+        return acquireRelease();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean acquireRelease8() throws SQLException {
+        return acquireRelease();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean acquireRelease64() throws SQLException {
+        return acquireRelease();
+    }
+
+    private boolean acquireRelease() throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            return con.isClosed();
+        }
+    }
+}
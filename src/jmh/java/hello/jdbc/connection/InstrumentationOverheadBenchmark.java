@@ -0,0 +1,47 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 계측 비용 - HikariDataSource 그대로 vs InstrumentedDataSource 로 감싼 것
+ * 커넥션 획득/반납만 하므로 점수 차이가 계측에 드는 시간이다. (목표 100ns 이하)
+ * sampleRate 0 은 감싸지 않은 것, 1 은 매번 시간을 재는 것, 16 은 기본값이다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstrumentationOverheadBenchmark {
+
+    @Param({"0", "1", "16"})
+    int sampleRate;
+
+    HikariDataSource hikari;
+    DataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hikari = BenchmarkDataSource.create();
+        dataSource = sampleRate == 0 ? hikari : new InstrumentedDataSource(hikari, sampleRate);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hikari.close();
+    }
+
+    @Benchmark
+    public boolean acquireRelease() throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            return con.isClosed();
+        }
+    }
+}
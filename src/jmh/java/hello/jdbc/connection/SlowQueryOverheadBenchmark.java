@@ -0,0 +1,70 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 느린 쿼리 로그 비용 - MemberRepositoryV4_2.findById 한 번
+ * none 은 감싸지 않은 것, fast 는 기준 시간(100ms)을 넘는 실행이 없는 보통 상황이다. (프록시 + 누적 값)
+ * allSlow 는 기준 시간 0 으로 모든 실행을 느린 쿼리로 넘긴다. 파일 쓰기와 EXPLAIN 은 백그라운드에서 하므로
+ * 호출 스레드는 큐에 넣는 비용만 낸다. (큐가 차면 버린다.)
+ * ./gradlew jmh -Pjmh.includes=SlowQueryOverheadBenchmark -Pjmh.prof=gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlowQueryOverheadBenchmark {
+
+    @Param({"none", "fast", "allSlow"})
+    String mode;
+
+    HikariDataSource hikari;
+    SlowQueryDataSource slowQueryDataSource;
+    MemberRepositoryV4_2 repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hikari = BenchmarkDataSource.create();
+        BenchmarkDataSource.clear(hikari);
+        Path logFile = Path.of("build/jmh-slow-query/slow-query.log");
+        switch (mode) {
+            case "none":
+                repository = new MemberRepositoryV4_2(hikari);
+                break;
+            case "fast":
+                slowQueryDataSource = new SlowQueryDataSource(hikari, Duration.ofMillis(100), logFile);
+                repository = new MemberRepositoryV4_2(slowQueryDataSource);
+                break;
+            case "allSlow":
+                slowQueryDataSource = new SlowQueryDataSource(hikari, Duration.ZERO, logFile);
+                repository = new MemberRepositoryV4_2(slowQueryDataSource);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown mode = " + mode);
+        }
+        repository.save(new Member("memberA", 10000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (slowQueryDataSource != null) {
+            slowQueryDataSource.close();
+        }
+        BenchmarkDataSource.clear(hikari);
+        hikari.close();
+    }
+
+    @Benchmark
+    public Member findById() {
+        return repository.findById("memberA");
+    }
+}
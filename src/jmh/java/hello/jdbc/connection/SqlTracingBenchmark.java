@@ -0,0 +1,88 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import ch.qos.logback.classic.Logger;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL 추적 비용 - MemberRepositoryV4_2 의 조회/변경 한 번
+ * off 는 추적하지 않는 것, sampled 는 100 번에 한 번(기본값), full 은 매번 기록하는 것,
+ * log 는 예전처럼 실행마다 INFO 로그를 남기는 것이다. (full + 로그 제한 없음)
+ * 벤치마크 logback 설정은 WARN 이상만 남기므로 log 일 때만 SqlTracer 로거를 INFO 로 연다.
+ * log 는 콘솔 출력까지 포함하므로 점수가 출력 장치에 따라 달라진다.
+ * ./gradlew jmh -Pjmh.includes=SqlTracingBenchmark -Pjmh.prof=gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlTracingBenchmark {
+
+    @Param({"off", "sampled", "full", "log"})
+    String mode;
+
+    HikariDataSource dataSource;
+    MemberRepositoryV4_2 repository;
+    int money;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSource.create();
+        BenchmarkDataSource.clear(dataSource);
+        repository = new MemberRepositoryV4_2(dataSource);
+        repository.save(new Member("memberA", 10000));
+
+        SqlTracer tracer = SqlTracer.shared();
+        tracer.setSampleRate(100);
+        switch (mode) {
+            case "off":
+                tracer.setMode(SqlTracer.Mode.OFF);
+                break;
+            case "sampled":
+                tracer.setMode(SqlTracer.Mode.SAMPLED);
+                tracer.setLogPerSecond(10);
+                break;
+            case "full":
+                tracer.setMode(SqlTracer.Mode.FULL);
+                tracer.setLogPerSecond(10);
+                break;
+            case "log":
+                tracer.setMode(SqlTracer.Mode.FULL);
+                tracer.setLogPerSecond(Integer.MAX_VALUE);
+                tracerLogger().setLevel(ch.qos.logback.classic.Level.INFO);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown mode = " + mode);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SqlTracer.shared().setMode(SqlTracer.Mode.SAMPLED);
+        SqlTracer.shared().setLogPerSecond(10);
+        tracerLogger().setLevel(null); // 루트 로거 레벨(WARN)을 따른다.
+        BenchmarkDataSource.clear(dataSource);
+        dataSource.close();
+    }
+
+    private static Logger tracerLogger() {
+        return (Logger) LoggerFactory.getLogger(SqlTracer.class);
+    }
+
+    @Benchmark
+    public Member findById() {
+        return repository.findById("memberA");
+    }
+
+    @Benchmark
+    public void update() {
+        repository.update("memberA", ++money);
+    }
+}
@@ -0,0 +1,52 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PreparedStatement 캐시 벤치마크 - MemberRepositoryV4_2.findById() 지연 시간
+ * cacheSize 0 은 캐시 없이 매번 prepareStatement() 하는 기존 방식이다.
+ * tcp 는 prepareStatement() 자체가 서버 왕복이라 차이가 더 크다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatementCacheBenchmark {
+
+    @Param({"mem", "tcp"})
+    String mode;
+
+    @Param({"0", "64"})
+    int cacheSize;
+
+    HikariDataSource dataSource;
+    MemberRepositoryV4_2 repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = "tcp".equals(mode) ? BenchmarkDataSource.tcpUrl() : BenchmarkDataSource.MEM_URL;
+        dataSource = cacheSize == 0
+                ? BenchmarkDataSource.create(url)
+                : BenchmarkDataSource.createWithStatementCache(url, cacheSize);
+        BenchmarkDataSource.clear(dataSource);
+        repository = new MemberRepositoryV4_2(dataSource);
+        repository.save(new Member("memberA", 10000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Member findById() {
+        return repository.findById("memberA");
+    }
+}
@@ -0,0 +1,123 @@
+package hello.jdbc.exception;
+
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.repository.ExceptionTranslatorRegistry;
+import hello.jdbc.repository.ex.MyDuplicateKeyException;
+import hello.jdbc.repository.ex.StackTracePolicy;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 예상된 예외의 비용 - CheckedTest/UncheckedTest 의 서비스/리포지토리 구조
+ * 리포지토리가 키 중복 예외를 던지고 서비스가 잡아서 복구한다. (ExTranslatorV1Test.Service.create 와 같은 흐름)
+ *
+ * mode  - full(기본, 항상 스택 트레이스), sampled(100 번에 한 번), none(남기지 않음), shared(미리 만든 인스턴스)
+ * depth - 예외가 나는 곳까지 더 쌓인 호출 수 (프록시, 트랜잭션 AOP 등을 거치면 스택이 깊어진다.)
+ *
+ * duplicateKey - 리포지토리가 MyDuplicateKeyException 을 던진다.
+ * translatedDuplicateKey - MemberRepositoryV4_2 처럼 SQLException 을 레지스트리 변환기로 바꿔서 던진다.
+ *                          변환기는 미리 만든 인스턴스를 쓰지 않으므로 shared 는 none 과 같다.
+ * ./gradlew jmh -Pjmh.includes=ExceptionCostBenchmark -Pjmh.prof=gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExceptionCostBenchmark {
+
+    @Param({"full", "sampled", "none", "shared"})
+    String mode;
+
+    @Param({"0", "50"})
+    int depth;
+
+    HikariDataSource dataSource;
+    Service service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StackTracePolicy.setMode(mode.equals("full") ? StackTracePolicy.Mode.FULL
+                : mode.equals("sampled") ? StackTracePolicy.Mode.SAMPLED : StackTracePolicy.Mode.NONE);
+        StackTracePolicy.setSampleRate(100);
+        dataSource = BenchmarkDataSource.create();
+        service = new Service(new Repository(ExceptionTranslatorRegistry.shared().translator(dataSource),
+                mode.equals("shared")));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        StackTracePolicy.setMode(StackTracePolicy.Mode.FULL);
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Object duplicateKey() {
+        return service.callCatch(depth);
+    }
+
+    @Benchmark
+    public Object translatedDuplicateKey() {
+        return service.callCatchTranslated(depth);
+    }
+
+    static class Service {
+        final Repository repository;
+
+        Service(Repository repository) {
+            this.repository = repository;
+        }
+
+        // 예외를 잡아서 처리하는 코드 - 복구했다고 보고 잡은 예외를 돌려준다.
+        Object callCatch(int depth) {
+            try {
+                repository.call(depth);
+                return null;
+            } catch (MyDuplicateKeyException e) {
+                return e;
+            }
+        }
+
+        Object callCatchTranslated(int depth) {
+            try {
+                repository.callTranslated(depth);
+                return null;
+            } catch (DuplicateKeyException e) {
+                return e;
+            }
+        }
+    }
+
+    static class Repository {
+        final SQLExceptionTranslator exTranslator;
+        final boolean shared;
+        final SQLException duplicate = new SQLException("Unique index or primary key violation", "23505", 23505);
+
+        Repository(SQLExceptionTranslator exTranslator, boolean shared) {
+            this.exTranslator = exTranslator;
+            this.shared = shared;
+        }
+
+        void call(int depth) {
+            if (depth > 0) {
+                call(depth - 1);
+                return;
+            }
+            throw shared ? MyDuplicateKeyException.shared() : new MyDuplicateKeyException(duplicate);
+        }
+
+        void callTranslated(int depth) {
+            if (depth > 0) {
+                callTranslated(depth - 1);
+                return;
+            }
+            throw exTranslator.translate("save", "insert into member(member_id, money) values (?, ?)", duplicate);
+        }
+    }
+}
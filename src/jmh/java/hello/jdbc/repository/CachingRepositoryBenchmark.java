@@ -0,0 +1,66 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 조회 캐시 벤치마크 - MemberRepositoryV5 그대로 vs CachingMemberRepository 로 감싼 것
+ * 조회 50번에 변경 1번 비율로 1000명 중 임의의 회원에 접근한다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CachingRepositoryBenchmark {
+
+    static final int MEMBERS = 1000;
+
+    @Param({"mem", "tcp"})
+    String mode;
+
+    @Param({"false", "true"})
+    boolean cached;
+
+    HikariDataSource dataSource;
+    MemberRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSource.create("tcp".equals(mode) ? BenchmarkDataSource.tcpUrl() : BenchmarkDataSource.MEM_URL);
+        BenchmarkDataSource.clear(dataSource);
+        MemberRepositoryV5 target = new MemberRepositoryV5(dataSource);
+        List<Member> members = new ArrayList<>(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(new Member("m" + i, 10000));
+        }
+        target.saveAll(members);
+        repository = cached ? new CachingMemberRepository(target, MEMBERS, Duration.ofMinutes(1)) : target;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Member readMostly() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String memberId = "m" + random.nextInt(MEMBERS);
+        if (random.nextInt(51) == 0) {
+            repository.update(memberId, random.nextInt(10000));
+            return null;
+        }
+        return repository.findById(memberId);
+    }
+}
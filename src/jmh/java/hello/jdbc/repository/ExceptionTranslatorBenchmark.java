@@ -0,0 +1,88 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import java.lang.reflect.Constructor;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 예외 변환 비용 - SQLErrorCodeSQLExceptionTranslator 와 레지스트리의 미리 풀어 둔 변환기
+ * code 는 duplicateKey(23505), lockTimeout(50200, 코드 목록 뒤쪽), unmatched(40001, 표에 없어서 하위 타입으로 변환)
+ *
+ * 두 변환기 모두 DB 종류는 setUp 에서 미리 알아내 둔다. 여기서 재는 것은 변환 한 번의 비용이다.
+ * 변환 결과 예외를 만드는 비용(스택 트레이스)이 대부분이라서, construct 로 같은 예외를 바로 만드는 비용도 같이 잰다.
+ * (변환기의 코드 찾기 비용 = translate - construct)
+ * ./gradlew jmh -Pjmh.includes=ExceptionTranslatorBenchmark -Pjmh.prof=gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExceptionTranslatorBenchmark {
+
+    @Param({"spring", "registry"})
+    String translator;
+
+    @Param({"duplicateKey", "lockTimeout", "unmatched"})
+    String code;
+
+    HikariDataSource dataSource;
+    SQLExceptionTranslator exTranslator;
+    SQLException exception;
+    Constructor<? extends DataAccessException> translatedType;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchMethodException {
+        dataSource = BenchmarkDataSource.create();
+        if (translator.equals("spring")) {
+            exTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        } else {
+            exTranslator = ExceptionTranslatorRegistry.shared().translator(dataSource);
+        }
+        exception = exception(code);
+        // 스프링 변환기는 여기서 DB 종류를 읽는다.
+        translatedType = exTranslator.translate("task", "sql", exception).getClass().getConstructor(String.class, Throwable.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public DataAccessException translate() {
+        return exTranslator.translate("save", "insert into member(member_id, money) values (?, ?)", exception);
+    }
+
+    // 같은 종류의 예외를 변환 없이 만든다.
+    @Benchmark
+    public DataAccessException construct() {
+        try {
+            return translatedType.newInstance("save", exception);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static SQLException exception(String code) {
+        switch (code) {
+            case "duplicateKey":
+                return new SQLException("Unique index or primary key violation", "23505", 23505);
+            case "lockTimeout":
+                return new SQLException("Timeout trying to lock table", "HYT00", 50200);
+            case "unmatched":
+                return new SQLTransactionRollbackException("Deadlock detected", "40001", 40001);
+            default:
+                throw new IllegalArgumentException("unknown code = " + code);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 페이지 조회 벤치마크 - 1페이지 vs 10,000페이지
+ * keyset(findPage)은 페이지 번호와 상관없이 비용이 같고, offset 은 앞 페이지를 다 건너뛰어야 해서 느려진다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindPageBenchmark {
+
+    static final int PAGE_SIZE = 10;
+    static final int PAGES = 10_000;
+
+    @Param({"1", "10000"})
+    int page;
+
+    HikariDataSource dataSource;
+    MemberRepository repository;
+    JdbcTemplate template;
+    String afterMemberId; // keyset 기준 - 이전 페이지의 마지막 id
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSource.create();
+        BenchmarkDataSource.clear(dataSource);
+        repository = new MemberRepositoryV5(dataSource);
+        template = new JdbcTemplate(dataSource);
+
+        List<Member> members = new ArrayList<>(PAGE_SIZE * PAGES);
+        for (int i = 0; i < PAGE_SIZE * PAGES; i++) {
+            members.add(new Member(String.format("m%07d", i), 10000));
+        }
+        repository.saveAll(members);
+        afterMemberId = page == 1 ? null : members.get((page - 1) * PAGE_SIZE - 1).getMemberId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDataSource.clear(dataSource);
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Member> keyset() {
+        return repository.findPage(afterMemberId, PAGE_SIZE);
+    }
+
+    // 비교용 - limit ? offset ?
+    @Benchmark
+    public List<Map<String, Object>> offset() {
+        return template.queryForList("select * from member order by member_id limit ? offset ?",
+                PAGE_SIZE, (page - 1) * PAGE_SIZE);
+    }
+}
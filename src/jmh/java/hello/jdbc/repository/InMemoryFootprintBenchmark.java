@@ -0,0 +1,60 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 백만 명을 담는 메모리 - HashMap<String, Member> vs InMemoryMemberRepository
+ * 힙 사용량을 System.gc() 전후로 재면 GC 시점에 따라 값이 흔들린다. 대신 -prof gc 의 gc.alloc.rate.norm 으로
+ * 한 번 채우는 데 할당한 바이트를 본다. 채운 뒤 버리는 객체가 없으므로 이 값이 곧 담고 있는 크기다.
+ * - 키 문자열은 양쪽이 같이 쓰므로 setUp 에서 미리 만들고 빼고 잰다.
+ * - hashMap 은 회원마다 Member 를 새로 만들어 넣는다. (맵이 들고 있는 객체)
+ * - inMemory 는 미리 만든 Member 를 넘긴다. 리포지토리는 Member 를 들고 있지 않는다.
+ * - 둘 다 크기를 미리 잡아서 늘어나면서 버리는 배열이 없다.
+ * ./gradlew jmh -Pjmh.includes=InMemoryFootprintBenchmark -Pjmh.prof=gc
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class InMemoryFootprintBenchmark {
+
+    static final int COUNT = 1_000_000;
+
+    String[] memberIds;
+    Member[] members;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        memberIds = new String[COUNT];
+        members = new Member[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            memberIds[i] = "m" + i;
+            members[i] = new Member(memberIds[i], i);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Member> hashMap() {
+        Map<String, Member> map = new HashMap<>(COUNT * 4 / 3 + 1);
+        for (int i = 0; i < COUNT; i++) {
+            map.put(memberIds[i], new Member(memberIds[i], i));
+        }
+        return map;
+    }
+
+    @Benchmark
+    public InMemoryMemberRepository inMemory() {
+        InMemoryMemberRepository repository = new InMemoryMemberRepository(COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            repository.save(members[i]);
+        }
+        return repository;
+    }
+}
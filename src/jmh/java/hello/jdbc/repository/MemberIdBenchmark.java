@@ -0,0 +1,72 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 새 회원 저장 - ID 를 어떻게 만드는지에 따른 insert/s 와 키 중복 재시도 수
+ * - random  : ExTranslatorV1Test.Service 처럼 임의의 숫자로 ID 를 만들고 키 중복이면 다시 만든다. (0 ~ 999999)
+ *             테이블이 찰수록 겹칠 확률이 올라간다. 측정 중에도 테이블을 비우지 않는다.
+ * - block1  : MemberIdAllocator, 블록 크기 1 - ID 하나마다 시퀀스 테이블 트랜잭션이 한 번 더 돈다.
+ * - block100: MemberIdAllocator, 블록 크기 100 - 시퀀스 테이블은 100 번에 한 번만 간다.
+ * duplicateRetries 는 키 중복으로 다시 시도한 insert 수다. 발급기는 0 이어야 한다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MemberIdBenchmark {
+
+    static final int RANDOM_ID_SPACE = 1_000_000;
+
+    @Param({"random", "block1", "block100"})
+    String strategy;
+
+    HikariDataSource dataSource;
+    MemberRepository repository;
+    MemberIdAllocator allocator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSource.create();
+        BenchmarkDataSource.clear(dataSource);
+        repository = new MemberRepositoryV5(dataSource);
+        if (strategy.startsWith("block")) {
+            allocator = new MemberIdAllocator(dataSource, "b", Integer.parseInt(strategy.substring("block".length())));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Retries {
+        public long duplicateRetries;
+    }
+
+    @Benchmark
+    public Member insert(Retries retries) {
+        if (allocator != null) {
+            return repository.save(new Member(allocator.nextMemberId(), 0));
+        }
+        while (true) {
+            try {
+                return repository.save(new Member("r" + ThreadLocalRandom.current().nextInt(RANDOM_ID_SPACE), 0));
+            } catch (DuplicateKeyException e) {
+                retries.duplicateRetries++;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MemberRepositoryV0 - DBConnectionUtil 로 커넥션을 얻기 때문에 ConnectionConst.URL 의 H2 서버가 떠 있어야 한다.
+ * (테스트와 같은 서버, 같은 member 테이블)
+ * 측정 항목은 RepositoryGenerationBenchmark 와 같다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemberRepositoryV0Benchmark {
+
+    static final String MEMBER_ID = "jmhV0";
+
+    MemberRepositoryV0 repository = new MemberRepositoryV0();
+    final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        repository.delete(MEMBER_ID);
+        repository.save(new Member(MEMBER_ID, 10000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        repository.delete(MEMBER_ID);
+    }
+
+    @Benchmark
+    public Member findById() throws SQLException {
+        return repository.findById(MEMBER_ID);
+    }
+
+    @Benchmark
+    public void update() throws SQLException {
+        repository.update(MEMBER_ID, 20000);
+    }
+
+    // 외부 서버의 테이블을 채우지 않도록 저장한 회원은 바로 지운다.
+    @Benchmark
+    public void saveAndDelete() throws SQLException {
+        String memberId = "jmh" + sequence.incrementAndGet();
+        repository.save(new Member(memberId, 10000));
+        repository.delete(memberId);
+    }
+}
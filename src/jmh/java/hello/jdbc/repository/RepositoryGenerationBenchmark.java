@@ -0,0 +1,136 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 리포지토리 세대별 비용 - V1 ~ V5 의 save/findById/update/delete
+ * db 는 mem(임베디드 메모리), file(임베디드 파일), tcp(같은 JVM 에 띄운 H2 서버)
+ * delete 는 없는 회원을 지우면 의미가 없어서 saveAndDelete 로 잰다. (delete 비용 = saveAndDelete - save)
+ *
+ * V0 는 DBConnectionUtil(ConnectionConst.URL)에 묶여 있어서 MemberRepositoryV0Benchmark 에서 따로 잰다.
+ * ./gradlew jmh 를 실행하면 결과가 build/reports/jmh/results.json 에 남는다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryGenerationBenchmark {
+
+    static final String MEMBER_ID = "memberA";
+
+    @Param({"V1", "V2", "V3", "V4_1", "V4_2", "V5"})
+    String generation;
+
+    @Param({"mem", "file", "tcp"})
+    String db;
+
+    HikariDataSource dataSource;
+    Crud repository;
+    final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSource.create(BenchmarkDataSource.url(db));
+        repository = crud(generation, dataSource);
+    }
+
+    // 반복마다 테이블을 비우고 조회/수정할 회원 한 명만 넣어 둔다.
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws SQLException {
+        BenchmarkDataSource.clear(dataSource);
+        repository.save(new Member(MEMBER_ID, 10000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Member findById() throws SQLException {
+        return repository.findById(MEMBER_ID);
+    }
+
+    @Benchmark
+    public void update() throws SQLException {
+        repository.update(MEMBER_ID, 20000);
+    }
+
+    @Benchmark
+    public void save() throws SQLException {
+        repository.save(new Member("s" + sequence.incrementAndGet(), 10000));
+    }
+
+    @Benchmark
+    public void saveAndDelete() throws SQLException {
+        String memberId = "d" + sequence.incrementAndGet();
+        repository.save(new Member(memberId, 10000));
+        repository.delete(memberId);
+    }
+
+    // 세대마다 예외 선언이 달라서 같은 모양으로 맞춘다.
+    interface Crud {
+        void save(Member member) throws SQLException;
+
+        Member findById(String memberId) throws SQLException;
+
+        void update(String memberId, int money) throws SQLException;
+
+        void delete(String memberId) throws SQLException;
+    }
+
+    static Crud crud(String generation, HikariDataSource dataSource) {
+        switch (generation) {
+            case "V1":
+                MemberRepositoryV1 v1 = new MemberRepositoryV1(dataSource);
+                return new Crud() {
+                    public void save(Member member) throws SQLException { v1.save(member); }
+                    public Member findById(String memberId) throws SQLException { return v1.findById(memberId); }
+                    public void update(String memberId, int money) throws SQLException { v1.update(memberId, money); }
+                    public void delete(String memberId) throws SQLException { v1.delete(memberId); }
+                };
+            case "V2":
+                MemberRepositoryV2 v2 = new MemberRepositoryV2(dataSource);
+                return new Crud() {
+                    public void save(Member member) throws SQLException { v2.save(member); }
+                    public Member findById(String memberId) throws SQLException { return v2.findById(memberId); }
+                    public void update(String memberId, int money) throws SQLException { v2.update(memberId, money); }
+                    public void delete(String memberId) throws SQLException { v2.delete(memberId); }
+                };
+            case "V3":
+                MemberRepositoryV3 v3 = new MemberRepositoryV3(dataSource);
+                return new Crud() {
+                    public void save(Member member) throws SQLException { v3.save(member); }
+                    public Member findById(String memberId) throws SQLException { return v3.findById(memberId); }
+                    public void update(String memberId, int money) throws SQLException { v3.update(memberId, money); }
+                    public void delete(String memberId) throws SQLException { v3.delete(memberId); }
+                };
+            case "V4_1":
+                return crud(new MemberRepositoryV4_1(dataSource));
+            case "V4_2":
+                return crud(new MemberRepositoryV4_2(dataSource));
+            case "V5":
+                return crud(new MemberRepositoryV5(dataSource));
+            default:
+                throw new IllegalArgumentException("unknown generation = " + generation);
+        }
+    }
+
+    static Crud crud(MemberRepository repository) {
+        return new Crud() {
+            public void save(Member member) { repository.save(member); }
+            public Member findById(String memberId) { return repository.findById(memberId); }
+            public void update(String memberId, int money) { repository.update(memberId, money); }
+            public void delete(String memberId) { repository.delete(memberId); }
+        };
+    }
+}
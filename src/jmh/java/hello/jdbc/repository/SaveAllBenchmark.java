@@ -0,0 +1,67 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 대량 등록 벤치마크 - save() 반복 vs saveAll()
+ * 결과 단위는 초당 저장한 행 수(rows/sec)이다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(SaveAllBenchmark.ROWS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SaveAllBenchmark {
+
+    static final int ROWS = 10_000;
+
+    @Param({"V4_2", "V5"})
+    String version;
+
+    HikariDataSource dataSource;
+    MemberRepository repository;
+    List<Member> members;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSource.create();
+        repository = "V4_2".equals(version) ? new MemberRepositoryV4_2(dataSource) : new MemberRepositoryV5(dataSource);
+        members = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            members.add(new Member("m" + i, 10000));
+        }
+    }
+
+    // 매 실행 전에 테이블을 비워서 키 중복이 나지 않게 한다.
+    @Setup(Level.Invocation)
+    public void clear() {
+        BenchmarkDataSource.clear(dataSource);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    // 기존 방식 - 한 건마다 커넥션 획득, insert 한번
+    @Benchmark
+    public void saveLoop() {
+        for (Member member : members) {
+            repository.save(member);
+        }
+    }
+
+    @Benchmark
+    public SaveAllResult saveAll() {
+        return repository.saveAll(members);
+    }
+}
@@ -0,0 +1,66 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 샤드 수에 따른 쓰기 처리량 - 샤드마다 별도 메모리 H2 DB 를 쓴다.
+ * 8 스레드가 10000명 중 임의의 회원 잔액을 바꾼다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ShardedWriteBenchmark {
+
+    static final int MEMBERS = 10000;
+
+    @Param({"1", "2", "4"})
+    int shards;
+
+    List<HikariDataSource> dataSources = new ArrayList<>();
+    ExecutorService executor;
+    ShardedMemberRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < shards; i++) {
+            HikariDataSource dataSource = BenchmarkDataSource.create("jdbc:h2:mem:shard" + i + ";DB_CLOSE_DELAY=-1");
+            BenchmarkDataSource.clear(dataSource);
+            dataSources.add(dataSource);
+        }
+        executor = Executors.newFixedThreadPool(shards);
+        repository = new ShardedMemberRepository(new ArrayList<DataSource>(dataSources), executor);
+
+        List<Member> members = new ArrayList<>(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(new Member("m" + i, 10000));
+        }
+        repository.saveAll(members);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        dataSources.forEach(HikariDataSource::close);
+    }
+
+    @Benchmark
+    public boolean write() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return repository.adjustBalance("m" + random.nextInt(MEMBERS), random.nextInt(-100, 101));
+    }
+}
@@ -0,0 +1,120 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 계좌이체 벤치마크 - 조회 후 절대값 변경(accountTransfer) vs 상대값 변경(accountTransferAtomic)
+ * 8개 스레드가 1000개 계좌 중 임의의 두 계좌 사이에서 동시에 이체한다.
+ * 락 대기 끝에 실패한 이체(교착 상태 등)는 예외를 삼키고 다음 이체를 한다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class AccountTransferBenchmark {
+
+    static final int ACCOUNTS = 1000;
+
+    AnnotationConfigApplicationContext context;
+    MemberServiceV4 memberService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        memberService = context.getBean(MemberServiceV4.class);
+
+        DataSource dataSource = context.getBean(DataSource.class);
+        MemberRepository memberRepository = context.getBean(MemberRepository.class);
+        BenchmarkDataSource.clear((HikariDataSource) dataSource);
+        List<Member> members = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(accountId(i), 1_000_000));
+        }
+        memberRepository.saveAll(members);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    static String accountId(int i) {
+        return "acc" + i;
+    }
+
+    @Benchmark
+    public void readThenUpdate() {
+        String[] pair = randomPair();
+        try {
+            memberService.accountTransfer(pair[0], pair[1], 1);
+        } catch (DataAccessException e) {
+            // 락 충돌로 실패한 이체
+        }
+    }
+
+    @Benchmark
+    public void relativeUpdate() {
+        String[] pair = randomPair();
+        try {
+            memberService.accountTransferAtomic(pair[0], pair[1], 1);
+        } catch (DataAccessException e) {
+            // 락 충돌로 실패한 이체
+        }
+    }
+
+    private static String[] randomPair() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        int to = random.nextInt(ACCOUNTS - 1);
+        if (to >= from) {
+            to++;
+        }
+        return new String[]{accountId(from), accountId(to)};
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class Config {
+
+        @Bean
+        DataSource dataSource() {
+            return BenchmarkDataSource.create();
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(dataSource());
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource());
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+}
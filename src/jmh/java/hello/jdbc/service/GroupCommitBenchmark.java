@@ -0,0 +1,104 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 그룹 커밋 처리량/지연 시간 곡선 - 파일 H2, 32개 스레드가 동시에 이체한다.
+ * groupSize 0 은 그룹 커밋 없이 accountTransferAtomic (@Transactional, 이체마다 커밋)
+ * 나머지는 GroupCommitTransferExecutor 의 maxGroupSize (maxWait 200us)
+ *
+ * Throughput 은 초당 이체 수, SampleTime 은 요청 한 건의 지연 시간 분포(p50, p99 ...)다.
+ * 그룹이 커질수록 커밋 비용을 나눠 내서 처리량은 오르고, 그룹이 찰 때까지 기다리는 만큼 지연 시간은 늘어난다.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class GroupCommitBenchmark {
+
+    static final int ACCOUNTS = 1000;
+
+    @Param({"0", "1", "8", "32", "128"})
+    int groupSize;
+
+    HikariDataSource dataSource;
+    MemberServiceV4 memberService;
+    GroupCommitTransferExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDataSource.create(BenchmarkDataSource.FILE_URL);
+        dataSource.setMaximumPoolSize(32);
+        BenchmarkDataSource.clear(dataSource);
+        MemberRepository memberRepository = new MemberRepositoryV5(dataSource);
+        List<Member> members = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(AccountTransferBenchmark.accountId(i), 1_000_000_000));
+        }
+        memberRepository.saveAll(members);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        if (groupSize == 0) {
+            // @Transactional 프록시 - 스프링 컨테이너 없이 같은 인터셉터를 붙인다.
+            TransactionInterceptor interceptor = new TransactionInterceptor();
+            interceptor.setTransactionManager(transactionManager);
+            interceptor.setTransactionAttributeSource(new AnnotationTransactionAttributeSource());
+            ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(memberRepository));
+            proxyFactory.setProxyTargetClass(true);
+            proxyFactory.addAdvice(interceptor);
+            memberService = (MemberServiceV4) proxyFactory.getProxy();
+        } else {
+            executor = new GroupCommitTransferExecutor(transactionManager, memberRepository,
+                    groupSize, Duration.ofNanos(200_000));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor != null) {
+            System.out.printf("%n[groupSize=%d] average group size = %.1f%n", groupSize, executor.getAverageGroupSize());
+            executor.close();
+        }
+        dataSource.close();
+    }
+
+    @Benchmark
+    public void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        int to = random.nextInt(ACCOUNTS - 1);
+        if (to >= from) {
+            to++;
+        }
+        String fromId = AccountTransferBenchmark.accountId(from);
+        String toId = AccountTransferBenchmark.accountId(to);
+        if (executor == null) {
+            try {
+                memberService.accountTransferAtomic(fromId, toId, 1);
+            } catch (ConcurrencyFailureException e) {
+                // 교착 상태로 롤백된 이체 - 그룹 커밋은 커밋 스레드 하나가 실행하므로 생기지 않는다.
+            }
+        } else {
+            executor.accountTransfer(fromId, toId, 1);
+        }
+    }
+}
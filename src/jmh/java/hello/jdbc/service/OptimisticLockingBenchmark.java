@@ -0,0 +1,98 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.VersionedMemberRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 낙관적 락(version + 재시도) vs 비관적 락(select ... for update, 순서 고정) 처리량
+ * 8개 스레드가 accounts 개 계좌 사이에서 양방향으로 이체한다. 계좌가 적을수록 경합이 심하다.
+ * - 2    : 모든 이체가 같은 두 계좌를 두고 다툰다.
+ * - 16   : 가끔 부딪힌다.
+ * - 1000 : 거의 부딪히지 않는다.
+ *
+ * failed 는 재시도 한도를 다 쓰고 실패한 이체 수다. 낙관적 락의 재시도 횟수는 트라이얼이 끝날 때 출력한다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class OptimisticLockingBenchmark {
+
+    @Param({"optimistic", "pessimistic"})
+    String mode;
+
+    @Param({"2", "16", "1000"})
+    int accounts;
+
+    AnnotationConfigApplicationContext context;
+    MemberServiceV4 memberService;
+    OptimisticTransferExecutor optimisticExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(AccountTransferBenchmark.Config.class);
+        memberService = context.getBean(MemberServiceV4.class);
+        MemberRepository memberRepository = context.getBean(MemberRepository.class);
+        optimisticExecutor = new OptimisticTransferExecutor(context.getBean(PlatformTransactionManager.class),
+                (VersionedMemberRepository) memberRepository);
+
+        BenchmarkDataSource.clear(context.getBean(HikariDataSource.class));
+        List<Member> members = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            members.add(new Member(AccountTransferBenchmark.accountId(i), 1_000_000_000));
+        }
+        memberRepository.saveAll(members);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (mode.equals("optimistic")) {
+            System.out.printf("%n[optimistic accounts=%d] conflicts=%d retries=%d exhausted=%d%n", accounts,
+                    optimisticExecutor.getConflictCount(), optimisticExecutor.getRetryCount(),
+                    optimisticExecutor.getExhaustedCount());
+        }
+        context.close();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Failures {
+        public long failed;
+    }
+
+    @Benchmark
+    public void transfer(Failures failures) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts);
+        int to = random.nextInt(accounts - 1);
+        if (to >= from) {
+            to++;
+        }
+        String fromId = AccountTransferBenchmark.accountId(from);
+        String toId = AccountTransferBenchmark.accountId(to);
+        try {
+            if (mode.equals("optimistic")) {
+                optimisticExecutor.accountTransfer(fromId, toId, 1);
+            } else {
+                memberService.accountTransferOrdered(fromId, toId, 1);
+            }
+        } catch (ConcurrencyFailureException e) {
+            failures.failed++;
+        }
+    }
+}
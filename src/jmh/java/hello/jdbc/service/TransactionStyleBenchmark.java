@@ -0,0 +1,160 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 트랜잭션 방식별 이체 비용 - 같은 이체(조회 두 번, 변경 두 번)를 방식만 바꿔서 잰다.
+ * - V2   : 커넥션을 파라미터로 넘기는 수동 트랜잭션
+ * - V3_1 : PlatformTransactionManager 직접 사용
+ * - V3_2 : TransactionTemplate
+ * - V3_3 : @Transactional 프록시 (MemberRepositoryV3)
+ * - V4   : @Transactional 프록시 (MemberRepository 인터페이스, JdbcTemplate)
+ *
+ * single 은 스레드 1개, contended 는 스레드 8개가 계좌 100개 사이에서 동시에 이체한다.
+ * 교착 상태가 생기지 않도록 항상 번호가 작은 계좌에서 큰 계좌로 보낸다.
+ * 할당량은 GC 프로파일러로 본다. ./gradlew jmh -Pjmh.includes=TransactionStyleBenchmark -Pjmh.prof=gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionStyleBenchmark {
+
+    static final int ACCOUNTS = 100;
+
+    @Param({"V2", "V3_1", "V3_2", "V3_3", "V4"})
+    String style;
+
+    AnnotationConfigApplicationContext context;
+    Transfer transfer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        HikariDataSource dataSource = context.getBean(HikariDataSource.class);
+        BenchmarkDataSource.clear(dataSource);
+        List<Member> members = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member("acc" + i, 1_000_000_000));
+        }
+        context.getBean(MemberRepository.class).saveAll(members);
+        transfer = transfer(style, context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void single() throws SQLException {
+        transferRandomPair();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void contended() throws SQLException {
+        transferRandomPair();
+    }
+
+    private void transferRandomPair() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS - 1);
+        int to = from + 1 + random.nextInt(ACCOUNTS - from - 1);
+        transfer.accountTransfer("acc" + from, "acc" + to, 1);
+    }
+
+    interface Transfer {
+        void accountTransfer(String fromId, String toId, int money) throws SQLException;
+    }
+
+    static Transfer transfer(String style, AnnotationConfigApplicationContext context) {
+        switch (style) {
+            case "V2":
+                return context.getBean(MemberServiceV2.class)::accountTransfer;
+            case "V3_1":
+                return context.getBean(MemberServiceV3_1.class)::accountTransfer;
+            case "V3_2":
+                return context.getBean(MemberServiceV3_2.class)::accountTransfer;
+            case "V3_3":
+                return context.getBean(MemberServiceV3_3.class)::accountTransfer;
+            case "V4":
+                return context.getBean(MemberServiceV4.class)::accountTransfer;
+            default:
+                throw new IllegalArgumentException("unknown style = " + style);
+        }
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class Config {
+
+        @Bean
+        HikariDataSource dataSource() {
+            return BenchmarkDataSource.create();
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(dataSource());
+        }
+
+        @Bean
+        MemberServiceV2 memberServiceV2() {
+            return new MemberServiceV2(dataSource(), new MemberRepositoryV2(dataSource()));
+        }
+
+        @Bean
+        MemberRepositoryV3 memberRepositoryV3() {
+            return new MemberRepositoryV3(dataSource());
+        }
+
+        @Bean
+        MemberServiceV3_1 memberServiceV3_1() {
+            return new MemberServiceV3_1(transactionManager(), memberRepositoryV3());
+        }
+
+        @Bean
+        MemberServiceV3_2 memberServiceV3_2() {
+            return new MemberServiceV3_2(transactionManager(), memberRepositoryV3());
+        }
+
+        @Bean
+        MemberServiceV3_3 memberServiceV3_3() {
+            return new MemberServiceV3_3(memberRepositoryV3());
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource());
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 양방향 이체 경합 - 조회 후 변경(accountTransfer) vs 락 순서 고정(accountTransferOrdered)
+ * 8개 스레드가 몇 개 안 되는 인기 계좌 사이에서 방향을 가리지 않고 이체한다. (A->B 와 B->A 가 섞인다.)
+ *
+ * 실패한 이체는 원인별로 센다. 재시도해야 하는 이체 수와 같다.
+ * - deadlocks    : 교착 상태로 DB 가 희생자로 고른 트랜잭션 (DeadlockLoserDataAccessException, SQLState 40001)
+ * - lockTimeouts : 락 대기 시간 초과 (CannotAcquireLockException)
+ * - conflicts    : 그 밖의 동시 변경 충돌 (ConcurrencyFailureException)
+ * ordered 에서는 세 값이 모두 0 이어야 한다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class TransferContentionBenchmark {
+
+    @Param({"readThenUpdate", "ordered"})
+    String mode;
+
+    @Param({"2", "16"})
+    int accounts;
+
+    AnnotationConfigApplicationContext context;
+    MemberServiceV4 memberService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 빈 구성은 AccountTransferBenchmark 와 같다.
+        context = new AnnotationConfigApplicationContext(AccountTransferBenchmark.Config.class);
+        memberService = context.getBean(MemberServiceV4.class);
+
+        BenchmarkDataSource.clear(context.getBean(HikariDataSource.class));
+        List<Member> members = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            members.add(new Member(AccountTransferBenchmark.accountId(i), 1_000_000_000));
+        }
+        context.getBean(MemberRepository.class).saveAll(members);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Failures {
+        public long deadlocks;
+        public long lockTimeouts;
+        public long conflicts;
+    }
+
+    @Benchmark
+    public void transfer(Failures failures) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts);
+        int to = random.nextInt(accounts - 1);
+        if (to >= from) {
+            to++;
+        }
+        String fromId = AccountTransferBenchmark.accountId(from);
+        String toId = AccountTransferBenchmark.accountId(to);
+        try {
+            if (mode.equals("ordered")) {
+                memberService.accountTransferOrdered(fromId, toId, 1);
+            } else {
+                memberService.accountTransfer(fromId, toId, 1);
+            }
+        } catch (CannotAcquireLockException e) {
+            failures.lockTimeouts++;
+        } catch (ConcurrencyFailureException e) {
+            if (isDeadlock(e)) {
+                failures.deadlocks++;
+            } else {
+                failures.conflicts++;
+            }
+        }
+    }
+
+    // H2 의 교착 상태(40001)는 스프링 에러 코드 표에 없어서 ConcurrencyFailureException 으로 온다. 원인 중에서 SQLState 를 찾는다.
+    private static boolean isDeadlock(ConcurrencyFailureException e) {
+        if (e instanceof DeadlockLoserDataAccessException) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && "40001".equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,282 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.connection.LatencyHistogram;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 계좌이체 부하 테스트 - MemberServiceV4 로 여러 스레드가 동시에 이체하고 결과를 리포트 파일로 남긴다.
+ * 외부 H2 서버 없이 임베디드 메모리 H2(BenchmarkDataSource)를 쓴다.
+ *
+ * - 계좌는 Zipfian 분포로 고른다. 앞 번호 계좌일수록 자주 뽑혀서 인기 계좌에 락 경합이 몰린다. (skew=0 이면 균등)
+ * - 이체 지연 시간을 LatencyHistogram 에 모아 p50/p99/p999 와 백분위 분포를 출력한다.
+ * - 실패한 이체는 예외 종류별로 센다. (락 타임아웃, 교착 상태 등)
+ * - 끝나면 전체 잔액 합이 처음과 같은지 확인한다. 조회 후 절대값으로 바꾸는 accountTransfer 는
+ *   동시에 같은 계좌를 바꾸면 갱신 손실이 생길 수 있어서, 합이 달라지면 그 차이를 리포트에 남긴다.
+ *
+ * ./gradlew transferLoad -Pload.args="threads=16 accounts=1000 skew=0.99 seconds=30"
+ * 옵션 (key=value): threads, accounts, skew, seconds, warmup, mode(transfer|atomic|ordered), report
+ */
+public class TransferLoadGenerator {
+
+    private static final int INITIAL_MONEY = 1_000_000;
+    private static final double[] PERCENTILES = {50, 75, 90, 95, 99, 99.9, 99.99, 100};
+
+    private final int threads;
+    private final int accounts;
+    private final double skew;
+    private final int seconds;
+    private final int warmup;
+    private final String mode;
+    private final Path report;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder committed = new LongAdder();
+    private final Map<String, LongAdder> rollbacks = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    TransferLoadGenerator(Map<String, String> options) {
+        this.threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        this.accounts = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        this.skew = Double.parseDouble(options.getOrDefault("skew", "0.99"));
+        this.seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        this.warmup = Integer.parseInt(options.getOrDefault("warmup", "2"));
+        this.mode = options.getOrDefault("mode", "transfer");
+        this.report = Paths.get(options.getOrDefault("report", "build/reports/load/transfer-load.txt"));
+        if (accounts < 2) {
+            throw new IllegalArgumentException("accounts must be at least 2");
+        }
+        if (!mode.equals("transfer") && !mode.equals("atomic") && !mode.equals("ordered")) {
+            throw new IllegalArgumentException("unknown mode = " + mode);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("option must be key=value: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        System.out.println(new TransferLoadGenerator(options).run());
+    }
+
+    String run() throws InterruptedException, IOException {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(Config.class)) {
+            HikariDataSource dataSource = context.getBean(HikariDataSource.class);
+            dataSource.setMaximumPoolSize(Math.max(threads, 10)); // 커넥션 대기가 아니라 락 경합을 본다.
+            BenchmarkDataSource.clear(dataSource);
+            MemberRepository memberRepository = context.getBean(MemberRepository.class);
+            List<Member> members = new ArrayList<>(accounts);
+            for (int i = 0; i < accounts; i++) {
+                members.add(new Member(accountId(i), INITIAL_MONEY));
+            }
+            memberRepository.saveAll(members);
+            long expectedTotal = (long) accounts * INITIAL_MONEY;
+
+            MemberServiceV4 memberService = context.getBean(MemberServiceV4.class);
+            Zipfian zipfian = new Zipfian(accounts, skew);
+
+            running = true;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            for (int i = 0; i < threads; i++) {
+                executor.execute(() -> work(memberService, zipfian));
+            }
+            TimeUnit.SECONDS.sleep(warmup);
+            reset(); // 워밍업 동안의 기록은 버린다.
+            long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(seconds);
+            running = false;
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            long elapsed = System.nanoTime() - start;
+
+            long actualTotal;
+            try (var stream = memberRepository.streamAll()) {
+                actualTotal = stream.mapToLong(Member::getMoney).sum();
+            }
+
+            String text = report(elapsed, expectedTotal, actualTotal);
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            Files.writeString(report, text, StandardCharsets.UTF_8);
+            return text;
+        }
+    }
+
+    private void work(MemberServiceV4 memberService, Zipfian zipfian) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            int from = zipfian.next(random);
+            int to;
+            do {
+                to = zipfian.next(random);
+            } while (to == from);
+            int money = 1 + random.nextInt(100);
+
+            long start = System.nanoTime();
+            try {
+                if (mode.equals("atomic")) {
+                    memberService.accountTransferAtomic(accountId(from), accountId(to), money);
+                } else if (mode.equals("ordered")) {
+                    memberService.accountTransferOrdered(accountId(from), accountId(to), money);
+                } else {
+                    memberService.accountTransfer(accountId(from), accountId(to), money);
+                }
+                committed.increment();
+            } catch (RuntimeException e) {
+                // @Transactional 이 롤백했다. 원인별로 센다.
+                rollbacks.computeIfAbsent(e.getClass().getSimpleName(), k -> new LongAdder()).increment();
+            }
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void reset() {
+        latency.reset();
+        committed.reset();
+        rollbacks.clear();
+    }
+
+    private String report(long elapsedNanos, long expectedTotal, long actualTotal) {
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        double elapsedSeconds = elapsedNanos / 1e9;
+        long rolledBack = rollbacks.values().stream().mapToLong(LongAdder::sum).sum();
+
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        writer.printf("# transfer load - mode=%s threads=%d accounts=%d skew=%.2f seconds=%d warmup=%d%n",
+                mode, threads, accounts, skew, seconds, warmup);
+        writer.printf("throughput     %.1f tx/s (committed %d, rolled back %d)%n",
+                committed.sum() / elapsedSeconds, committed.sum(), rolledBack);
+        writer.printf("latency (us)   p50=%.1f p99=%.1f p999=%.1f max=%.1f mean=%.1f%n",
+                micros(snapshot.getValueAtPercentile(50)), micros(snapshot.getValueAtPercentile(99)),
+                micros(snapshot.getValueAtPercentile(99.9)), micros(snapshot.getMax()), snapshot.getMean() / 1000);
+
+        writer.println();
+        writer.println("# percentile distribution (us)");
+        for (double percentile : PERCENTILES) {
+            writer.printf("%8.2f%%  %12.1f%n", percentile, micros(snapshot.getValueAtPercentile(percentile)));
+        }
+
+        writer.println();
+        writer.println("# rollbacks by cause");
+        if (rollbacks.isEmpty()) {
+            writer.println("none");
+        }
+        new TreeMap<>(rollbacks).forEach((cause, count) -> writer.printf("%-40s %d%n", cause, count.sum()));
+
+        writer.println();
+        writer.println("# money conservation");
+        writer.printf("expected=%d actual=%d -> %s%n", expectedTotal, actualTotal,
+                expectedTotal == actualTotal ? "OK" : String.format("MISMATCH (diff %+d)", actualTotal - expectedTotal));
+        writer.flush();
+        return out.toString();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    static String accountId(int i) {
+        return "acc" + i;
+    }
+
+    /**
+     * Zipfian 분포로 0 ~ n-1 을 뽑는다. (Gray 외, "Quickly Generating Billion-Record Synthetic Databases", YCSB 와 같은 방식)
+     * theta 가 클수록 앞 번호에 몰린다. 0 이면 균등 분포, 1 미만이어야 한다.
+     */
+    static class Zipfian {
+
+        private final int n;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        Zipfian(int n, double theta) {
+            if (theta < 0 || theta >= 1) {
+                throw new IllegalArgumentException("skew must be in [0, 1): " + theta);
+            }
+            this.n = n;
+            this.theta = theta;
+            this.alpha = 1 / (1 - theta);
+            this.zetaN = zeta(n, theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        int next(ThreadLocalRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return 1;
+            }
+            return Math.min((int) (n * Math.pow(eta * u - eta + 1, alpha)), n - 1);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class Config {
+
+        @Bean
+        HikariDataSource dataSource() {
+            return BenchmarkDataSource.create();
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(dataSource());
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource());
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.BenchmarkDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 정산 처리량 - 이체마다 트랜잭션(accountTransfer) vs batchSize 건씩 상계해서 한 트랜잭션(settle)
+ * 계좌 300개 사이의 1원짜리 이체 batchSize 건을 한 번의 호출로 보고, 초당 처리한 이체 수로 비교한다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferNettingBenchmark {
+
+    static final int ACCOUNTS = 300;
+    static final int BATCH_SIZE = 1000;
+
+    AnnotationConfigApplicationContext context;
+    MemberServiceV4 memberService;
+    TransferNettingService nettingService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        memberService = context.getBean(MemberServiceV4.class);
+        nettingService = context.getBean(TransferNettingService.class);
+
+        BenchmarkDataSource.clear(context.getBean(HikariDataSource.class));
+        List<Member> members = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(AccountTransferBenchmark.accountId(i), 1_000_000_000));
+        }
+        context.getBean(MemberRepository.class).saveAll(members);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // 매 호출마다 새 이체 묶음
+    @State(Scope.Thread)
+    public static class Batch {
+        List<Transfer> transfers;
+
+        @Setup(Level.Invocation)
+        public void next() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            transfers = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                int from = random.nextInt(ACCOUNTS);
+                int to = random.nextInt(ACCOUNTS - 1);
+                if (to >= from) {
+                    to++;
+                }
+                transfers.add(new Transfer(AccountTransferBenchmark.accountId(from), AccountTransferBenchmark.accountId(to), 1));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void perTransfer(Batch batch) {
+        for (Transfer transfer : batch.transfers) {
+            memberService.accountTransfer(transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public TransferBatchResult netted(Batch batch) {
+        return nettingService.settle(batch.transfers);
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class Config {
+
+        @Bean
+        DataSource dataSource() {
+            return BenchmarkDataSource.create();
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(dataSource());
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource());
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+
+        @Bean
+        TransferNettingService transferNettingService() {
+            return new TransferNettingService(memberRepository());
+        }
+    }
+}
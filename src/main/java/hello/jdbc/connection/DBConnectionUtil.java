@@ -3,7 +3,6 @@ package hello.jdbc.connection;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 import static hello.jdbc.connection.ConnectionConst.*;
@@ -12,15 +11,21 @@ import static hello.jdbc.connection.ConnectionConst.*;
  * JDBC 이해 - 데이터베이스 연결
  * 애플리케이션이랑 데이터베이스 연결해보자
  * 데이터베이스랑 연결하는 코드
+ *
+ * DriverManager 로 매번 새 커넥션을 만들던 것을 커넥션 풀(LockFreeConnectionPool)에서 꺼내 쓰도록 바꿨다.
+ * 꺼낸 커넥션을 close() 하면 풀에 반납된다.
  */
 @Slf4j
 public class DBConnectionUtil {
 
+    private static final LockFreeConnectionPool DATA_SOURCE = new LockFreeConnectionPool(URL, USERNAME, PASSWORD, 10);
+
     // jdbc 표준 인터페이스가 제공하는 Connection (java.sql.Connection)
     public static Connection getConnection() {
         try {
-            Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
-            log.info("get connection = {}, class = {}", connection, connection.getClass()); // 객체정보, 클래스 타입 정보 출력
+            long start = System.nanoTime();
+            Connection connection = DATA_SOURCE.getConnection();
+            SqlTracer.shared().acquired(start); // 매번 INFO 로그를 남기는 대신 SQL 추적에 커넥션 얻는 시간을 남긴다.
             return connection;
         } catch (SQLException e) {
             throw new IllegalArgumentException(e);
@@ -0,0 +1,241 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.Assert;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 커넥션 풀 계측 - 리포지토리가 쓰는 DataSource 를 감싸서 지표를 모은다.
+ * - 커넥션을 얻기까지 기다린 시간 (acquire wait)
+ * - 커넥션을 얻고 close() 할 때까지 쓴 시간 (hold)
+ * - 획득 수, 타임아웃 수 (모든 요청을 센다.)
+ * - 사용 중/쉬는 커넥션 수, 커넥션을 기다리는 스레드 수 (풀에 물어본다. HikariDataSource, LockFreeConnectionPool 이 아니면 -1)
+ *
+ * 이체가 느려졌을 때 acquire wait 가 길면 풀이 모자란 것이고, hold 가 길면 SQL 이 느린 것이다.
+ * 지표는 LatencyHistogram 과 LongAdder 로 락 없이 모은다. snapshot() 이나 JMX(registerMBean)로 본다.
+ *
+ * 시간은 sampleRate 번에 한 번만 잰다. System.nanoTime() 세 번과 커넥션 프록시가 획득/반납 비용의 대부분이라서
+ * 매번 재면 가상 머신에서는 획득 한 번에 200ns 넘게 든다. (sampleRate 1 이면 매번 잰다.)
+ *
+ * DataSource dataSource = new InstrumentedDataSource(hikariDataSource);
+ * MemberRepository repository = new MemberRepositoryV5(dataSource);
+ */
+public class InstrumentedDataSource extends DelegatingDataSource implements PoolMetricsMXBean {
+
+    @SuppressWarnings("deprecation")
+    private static final Constructor<?> CONNECTION_PROXY = proxyConstructor(
+            Proxy.getProxyClass(Connection.class.getClassLoader(), Connection.class));
+
+    private final int sampleRate;
+    private final LatencyHistogram acquireWait = new LatencyHistogram();
+    private final LatencyHistogram hold = new LatencyHistogram();
+    private final LongAdder acquires = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    private ObjectName objectName;
+
+    public InstrumentedDataSource(DataSource targetDataSource) {
+        this(targetDataSource, 16);
+    }
+
+    public InstrumentedDataSource(DataSource targetDataSource, int sampleRate) {
+        super(targetDataSource);
+        Assert.isTrue(sampleRate > 0, "sampleRate must be positive");
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        boolean sampled = sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+        long start = sampled ? System.nanoTime() : 0;
+        Connection connection;
+        try {
+            connection = obtainTargetDataSource().getConnection();
+        } catch (SQLTransientConnectionException e) {
+            timeouts.increment(); // 풀이 정해진 시간 안에 커넥션을 못 줬다.
+            throw e;
+        }
+        acquires.increment();
+        if (!sampled) {
+            return connection;
+        }
+
+        long acquired = System.nanoTime();
+        acquireWait.record(acquired - start);
+        try {
+            return (Connection) CONNECTION_PROXY.newInstance(new HoldTimeHandler(connection, acquired));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public PoolMetrics snapshot() {
+        return new PoolMetrics(getActiveConnections(), getIdleConnections(), getPendingThreads(),
+                acquires.sum(), timeouts.sum(), acquireWait.snapshot(), hold.snapshot());
+    }
+
+    // JMX 등록 - hello.jdbc:type=PoolMetrics,name={name}
+    public synchronized void registerMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("hello.jdbc:type=PoolMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 풀 종류마다 묻는 방법이 다르다. 모르는 풀이면 -1
+    @Override
+    public int getActiveConnections() {
+        DataSource target = getTargetDataSource();
+        if (target instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) target).getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections();
+        }
+        if (target instanceof LockFreeConnectionPool) {
+            return ((LockFreeConnectionPool) target).getActiveConnections();
+        }
+        return -1;
+    }
+
+    @Override
+    public int getIdleConnections() {
+        DataSource target = getTargetDataSource();
+        if (target instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) target).getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getIdleConnections();
+        }
+        if (target instanceof LockFreeConnectionPool) {
+            return ((LockFreeConnectionPool) target).getIdleConnections();
+        }
+        return -1;
+    }
+
+    @Override
+    public int getPendingThreads() {
+        DataSource target = getTargetDataSource();
+        if (target instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) target).getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getThreadsAwaitingConnection();
+        }
+        if (target instanceof LockFreeConnectionPool) {
+            return ((LockFreeConnectionPool) target).getPendingThreads();
+        }
+        return -1;
+    }
+
+    @Override
+    public long getAcquireCount() {
+        return acquires.sum();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public double getAcquireWaitMeanNanos() {
+        return acquireWait.snapshot().getMean();
+    }
+
+    @Override
+    public long getAcquireWaitP99Nanos() {
+        return acquireWait.snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getAcquireWaitMaxNanos() {
+        return acquireWait.snapshot().getMax();
+    }
+
+    @Override
+    public double getHoldMeanNanos() {
+        return hold.snapshot().getMean();
+    }
+
+    @Override
+    public long getHoldP99Nanos() {
+        return hold.snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getHoldMaxNanos() {
+        return hold.snapshot().getMax();
+    }
+
+    private static Constructor<?> proxyConstructor(Class<?> proxyClass) {
+        try {
+            return proxyClass.getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 표본으로 뽑힌 커넥션 - close() 할 때 커넥션을 쓴 시간을 기록한다.
+     */
+    private class HoldTimeHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final long acquired;
+        private boolean closed;
+
+        HoldTimeHandler(Connection target, long acquired) {
+            this.target = target;
+            this.acquired = acquired;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        hold.record(System.nanoTime() - acquired);
+                    }
+                    break;
+                default:
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
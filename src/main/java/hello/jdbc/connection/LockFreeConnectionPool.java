@@ -0,0 +1,351 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.Assert;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 가벼운 커넥션 풀 - DriverManager 로 만든 물리 커넥션을 재사용한다.
+ * - 쉬는 커넥션은 락 없는 스택(Treiber stack)에 쌓는다. 꺼내고 넣을 때 CAS 만 쓴다.
+ * - 스레드마다 마지막에 쓴 커넥션을 기억해 두고 먼저 꺼내 본다. 혼자 쓰는 스레드는 스택을 건드리지 않는다.
+ * - validationWindow 안에 쓴 커넥션은 isValid() 검사를 건너뛴다.
+ *
+ * 커넥션을 close() 하면 풀로 돌아간다. 트랜잭션을 열어둔 채로 돌아오면 롤백하고 autoCommit 을 되돌린다.
+ * 커넥션이 maximumPoolSize 만큼 다 나가 있으면 connectionTimeout 까지 기다리고, 그래도 없으면 예외를 던진다.
+ */
+@Slf4j
+public class LockFreeConnectionPool extends AbstractDataSource implements AutoCloseable {
+
+    private static final int IDLE = 0;
+    private static final int IN_USE = 1;
+    private static final int REMOVED = 2;
+
+    @SuppressWarnings("deprecation")
+    private static final Constructor<?> CONNECTION_PROXY = proxyConstructor(
+            Proxy.getProxyClass(Connection.class.getClassLoader(), Connection.class));
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maximumPoolSize;
+    private final long connectionTimeoutNanos;
+    private final long validationWindowNanos;
+
+    private final AtomicReference<Node> idle = new AtomicReference<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Entry> lastUsed = new ThreadLocal<>();
+    private volatile boolean closed;
+
+    public LockFreeConnectionPool(String url, String username, String password, int maximumPoolSize) {
+        this(url, username, password, maximumPoolSize, Duration.ofSeconds(30), Duration.ofMillis(500));
+    }
+
+    public LockFreeConnectionPool(String url, String username, String password, int maximumPoolSize,
+                                  Duration connectionTimeout, Duration validationWindow) {
+        Assert.isTrue(maximumPoolSize > 0, "maximumPoolSize must be positive");
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maximumPoolSize = maximumPoolSize;
+        this.connectionTimeoutNanos = connectionTimeout.toNanos();
+        this.validationWindowNanos = validationWindow.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long deadline = System.nanoTime() + connectionTimeoutNanos;
+        while (true) {
+            Entry entry = borrow();
+            if (entry != null) {
+                return lease(entry);
+            }
+
+            // 다 나가 있다. 반납될 때까지 기다린다.
+            // 반납하는 쪽이 줄에서 꺼내서 깨운다. 깨어난 뒤 다른 스레드에게 뺏기면 다시 줄을 선다.
+            Thread current = Thread.currentThread();
+            waiters.add(current);
+            entry = borrow(); // 줄을 선 사이에 반납됐을 수도 있다.
+            if (entry != null) {
+                waiters.remove(current);
+                return lease(entry);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                if (!waiters.remove(current)) {
+                    wakeWaiter(); // 받은 깨우기를 쓰지 않고 나가므로 다음 스레드에게 넘긴다.
+                }
+                throw new SQLTransientConnectionException(
+                        "connection is not available, request timed out (total=" + total.get() + ")");
+            }
+            LockSupport.parkNanos(this, remaining);
+            waiters.remove(current); // 시간이 지나서 깼으면 아직 줄에 있다.
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("username/password connection is not supported");
+    }
+
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    public int getPendingThreads() {
+        return waiters.size();
+    }
+
+    public int getActiveConnections() {
+        return Math.max(total.get() - getIdleConnections(), 0);
+    }
+
+    public int getIdleConnections() {
+        int count = 0;
+        for (Node node = idle.get(); node != null; node = node.next) {
+            if (node.entry.state.get() == IDLE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // 쉬고 있는 커넥션을 닫는다. 나가 있는 커넥션은 반납될 때 닫는다.
+    @Override
+    public void close() {
+        closed = true;
+        Node node;
+        while ((node = pop()) != null) {
+            if (node.entry.state.compareAndSet(IDLE, REMOVED)) {
+                discard(node.entry);
+            }
+        }
+    }
+
+    // 1. 이 스레드가 마지막에 쓴 커넥션 2. 스택 3. 새 커넥션
+    private Entry borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("pool is closed");
+        }
+        Entry entry = lastUsed.get();
+        if (entry != null && entry.state.compareAndSet(IDLE, IN_USE) && usable(entry)) {
+            return entry;
+        }
+
+        Node node;
+        while ((node = pop()) != null) {
+            entry = node.entry;
+            entry.stacked.set(false);
+            if (entry.state.compareAndSet(IDLE, IN_USE) && usable(entry)) {
+                return entry;
+            }
+            // 다른 스레드가 먼저 가져간 커넥션이다. 버리고 다음 노드를 본다.
+        }
+
+        int count;
+        while ((count = total.get()) < maximumPoolSize) {
+            if (total.compareAndSet(count, count + 1)) {
+                try {
+                    Connection connection = DriverManager.getConnection(url, username, password);
+                    log.info("new connection = {}, total = {}", connection, count + 1);
+                    return new Entry(connection, connection.getTransactionIsolation());
+                } catch (SQLException | RuntimeException e) {
+                    total.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+        return null;
+    }
+
+    // 최근에 쓴 커넥션은 검사하지 않는다. 검사에 실패하면 버린다.
+    private boolean usable(Entry entry) {
+        if (System.nanoTime() - entry.lastUsedNanos < validationWindowNanos) {
+            return true;
+        }
+        try {
+            if (entry.connection.isValid(1)) {
+                return true;
+            }
+        } catch (SQLException e) {
+            log.debug("validation failed", e);
+        }
+        entry.state.set(REMOVED);
+        discard(entry);
+        return false;
+    }
+
+    private void release(Entry entry) {
+        entry.lastUsedNanos = System.nanoTime();
+        if (closed) {
+            entry.state.set(REMOVED);
+            discard(entry);
+            return;
+        }
+        entry.state.set(IDLE);
+        lastUsed.set(entry);
+        // 이미 스택에 노드가 있으면 다시 넣지 않는다.
+        if (entry.stacked.compareAndSet(false, true)) {
+            push(entry);
+        }
+        wakeWaiter();
+    }
+
+    private void discard(Entry entry) {
+        JdbcUtils.closeConnection(entry.connection);
+        total.decrementAndGet();
+        wakeWaiter(); // 자리가 생겼으니 새로 만들 수 있다.
+    }
+
+    // 줄에서 꺼내서 깨운다. 꺼내지 않고 깨우면 반납이 여러 번 있어도 같은 스레드만 계속 깨운다.
+    private void wakeWaiter() {
+        Thread waiter = waiters.poll();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    private void push(Entry entry) {
+        Node node = new Node(entry);
+        do {
+            node.next = idle.get();
+        } while (!idle.compareAndSet(node.next, node));
+    }
+
+    // 노드는 재사용하지 않으므로 ABA 문제가 없다.
+    private Node pop() {
+        Node head;
+        do {
+            head = idle.get();
+            if (head == null) {
+                return null;
+            }
+        } while (!idle.compareAndSet(head, head.next));
+        return head;
+    }
+
+    private Connection lease(Entry entry) {
+        try {
+            return (Connection) CONNECTION_PROXY.newInstance(new PooledConnectionHandler(entry));
+        } catch (ReflectiveOperationException e) {
+            release(entry);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Constructor<?> proxyConstructor(Class<?> proxyClass) {
+        try {
+            return proxyClass.getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry {
+        private final Connection connection;
+        private final int defaultIsolation;
+        private final AtomicInteger state = new AtomicInteger(IN_USE);
+        private final AtomicBoolean stacked = new AtomicBoolean();
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        Entry(Connection connection, int defaultIsolation) {
+            this.connection = connection;
+            this.defaultIsolation = defaultIsolation;
+        }
+    }
+
+    private static class Node {
+        private final Entry entry;
+        private Node next;
+
+        Node(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * 빌려준 커넥션 - close() 하면 물리 커넥션을 닫지 않고 풀에 반납한다.
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+
+        private final Entry entry;
+        private boolean closed;
+        private boolean dirty; // autoCommit, readOnly, 격리수준을 바꿨는지
+
+        PooledConnectionHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + entry.connection + "]";
+                case "isClosed":
+                    return closed;
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        giveBack();
+                    }
+                    return null;
+                case "setAutoCommit":
+                case "setReadOnly":
+                case "setTransactionIsolation":
+                    dirty = true;
+                    break;
+                default:
+            }
+            if (closed) {
+                throw new SQLException("connection is closed");
+            }
+            try {
+                return method.invoke(entry.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        // 열린 트랜잭션은 롤백하고 설정을 기본값으로 되돌린 다음 반납한다.
+        private void giveBack() {
+            Connection connection = entry.connection;
+            try {
+                if (dirty) {
+                    if (!connection.getAutoCommit()) {
+                        connection.rollback();
+                        connection.setAutoCommit(true);
+                    }
+                    connection.setReadOnly(false);
+                    connection.setTransactionIsolation(entry.defaultIsolation);
+                }
+            } catch (SQLException e) {
+                log.debug("reset failed, discard connection", e);
+                entry.state.set(REMOVED);
+                discard(entry);
+                return;
+            }
+            release(entry);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package hello.jdbc.connection;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 커넥션 풀 지표 스냅샷 - InstrumentedDataSource.snapshot()
+ * activeConnections, idleConnections, pendingThreads 는 풀이 알려주지 않으면 -1 이다.
+ * acquireWait, hold 는 표본만 담는다. (InstrumentedDataSource 의 sampleRate)
+ */
+@Getter
+@ToString
+public class PoolMetrics {
+
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int pendingThreads;
+    private final long acquireCount;
+    private final long timeoutCount;
+    private final LatencyHistogram.Snapshot acquireWait;
+    private final LatencyHistogram.Snapshot hold;
+
+    PoolMetrics(int activeConnections, int idleConnections, int pendingThreads, long acquireCount, long timeoutCount,
+                LatencyHistogram.Snapshot acquireWait, LatencyHistogram.Snapshot hold) {
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.pendingThreads = pendingThreads;
+        this.acquireCount = acquireCount;
+        this.timeoutCount = timeoutCount;
+        this.acquireWait = acquireWait;
+        this.hold = hold;
+    }
+}
@@ -0,0 +1,30 @@
+package hello.jdbc.connection;
+
+/**
+ * 커넥션 풀 지표 - JMX 로 노출한다. (jconsole 에서 hello.jdbc:type=PoolMetrics 로 볼 수 있다.)
+ * 시간은 모두 나노초
+ */
+public interface PoolMetricsMXBean {
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getPendingThreads();
+
+    long getAcquireCount();
+
+    long getTimeoutCount();
+
+    double getAcquireWaitMeanNanos();
+
+    long getAcquireWaitP99Nanos();
+
+    long getAcquireWaitMaxNanos();
+
+    double getHoldMeanNanos();
+
+    long getHoldP99Nanos();
+
+    long getHoldMaxNanos();
+}
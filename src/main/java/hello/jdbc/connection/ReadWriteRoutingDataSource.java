@@ -0,0 +1,229 @@
+package hello.jdbc.connection;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 읽기/쓰기 분리 데이터소스 - 읽기는 replica, 쓰기는 primary 로 보낸다.
+ * - @Transactional(readOnly = true) 트랜잭션 -> replica
+ * - 트랜잭션 없이 실행하는 select (findById 등) -> replica
+ * - 그 외 (쓰기 트랜잭션, 트랜잭션 없는 insert/update/delete, select ... for update) -> primary
+ *
+ * 트랜잭션 매니저는 트랜잭션을 시작할 때 커넥션부터 얻고 readOnly 를 설정한다.
+ * 그래서 getConnection() 은 실제 커넥션 대신 지연 커넥션을 돌려주고, 첫 sql 을 실행할 때 대상을 고른다.
+ * 그때까지 들어온 setAutoCommit/setReadOnly/setTransactionIsolation 은 기억해 뒀다가 실제 커넥션에 적용한다.
+ *
+ * 복제 지연 허용 정책
+ * - replicaLag 가 maxLag 보다 크면 읽기도 primary 로 보낸다.
+ * - 한 스레드가 primary 에 쓰고 나서 maxLag 안에 읽으면 primary 에서 읽는다. (방금 쓴 값을 못 읽는 일을 막는다.)
+ *   쓰기 sql 을 준비할 때와 그 트랜잭션을 커밋할 때 시각을 남긴다. getMetaData() 처럼 sql 없이 primary 를 쓴 것은 쓰기가 아니다.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {PRIMARY, REPLICA}
+
+    // 지연 커넥션이 대상을 고를 때 읽기인지 알려준다. 없으면 트랜잭션의 readOnly 를 본다.
+    private static final ThreadLocal<Boolean> READ_HINT = new ThreadLocal<>();
+    // 줄바꿈이나 탭으로 띄운 "for\n update" 도 잡는다.
+    private static final Pattern FOR_UPDATE = Pattern.compile("\\bfor\\s+update\\b", Pattern.CASE_INSENSITIVE);
+
+    private final long maxLagNanos;
+    private final Supplier<Duration> replicaLag;
+    // 스레드가 마지막으로 primary 에 쓴 시각
+    private final ThreadLocal<Long> lastWriteNanos = new ThreadLocal<>();
+
+    private final LongAdder primaryCount = new LongAdder();
+    private final LongAdder replicaCount = new LongAdder();
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag) {
+        this(primary, replica, maxLag, () -> Duration.ZERO);
+    }
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag, Supplier<Duration> replicaLag) {
+        Assert.isTrue(!maxLag.isNegative(), "maxLag must not be negative");
+        this.maxLagNanos = maxLag.toNanos();
+        this.replicaLag = replicaLag;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new LazyRoutingConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("username/password connection is not supported");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Boolean read = READ_HINT.get();
+        if (read == null) {
+            read = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        }
+        if (read && replicaUsable()) {
+            replicaCount.increment();
+            return Route.REPLICA;
+        }
+        primaryCount.increment();
+        return Route.PRIMARY;
+    }
+
+    public long getPrimaryCount() {
+        return primaryCount.sum();
+    }
+
+    public long getReplicaCount() {
+        return replicaCount.sum();
+    }
+
+    private void markWrite() {
+        lastWriteNanos.set(System.nanoTime());
+    }
+
+    private boolean replicaUsable() {
+        Long lastWrite = lastWriteNanos.get();
+        if (lastWrite != null && System.nanoTime() - lastWrite < maxLagNanos) {
+            return false; // 방금 쓴 스레드
+        }
+        return replicaLag.get().toNanos() <= maxLagNanos;
+    }
+
+    // 트랜잭션 없는 select 만 읽기로 본다.
+    private static boolean isRead(String sql) {
+        String trimmed = sql.stripLeading();
+        return trimmed.regionMatches(true, 0, "select", 0, 6)
+                && !FOR_UPDATE.matcher(trimmed).find();
+    }
+
+    /**
+     * 첫 sql 을 받을 때 실제 커넥션을 얻는 지연 커넥션
+     */
+    private class LazyRoutingConnection implements InvocationHandler {
+
+        private Connection target;
+        private boolean autoCommit = true;
+        private boolean readOnly;
+        private Integer isolation;
+        private boolean closed;
+        private boolean wrote; // 쓰기 sql 을 준비했다.
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "LazyRoutingConnection[" + target + "]";
+                case "isClosed":
+                    return closed;
+                case "close":
+                    closed = true;
+                    if (target != null) {
+                        target.close();
+                    }
+                    return null;
+                default:
+            }
+
+            if (target == null) {
+                switch (method.getName()) {
+                    case "setAutoCommit":
+                        autoCommit = (Boolean) args[0];
+                        return null;
+                    case "getAutoCommit":
+                        return autoCommit;
+                    case "setReadOnly":
+                        readOnly = (Boolean) args[0];
+                        return null;
+                    case "isReadOnly":
+                        return readOnly;
+                    case "setTransactionIsolation":
+                        isolation = (Integer) args[0];
+                        return null;
+                    case "commit":
+                    case "rollback":
+                        return null; // 실행한 sql 이 없으면 할 일도 없다.
+                    case "prepareStatement":
+                    case "prepareCall":
+                        target = open(readOnly || (autoCommit && isRead((String) args[0])));
+                        break;
+                    default:
+                        target = open(readOnly);
+                }
+            }
+
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "prepareCall":
+                    if (!readOnly && !isRead((String) args[0])) {
+                        wrote = true;
+                        markWrite();
+                    }
+                    break;
+                case "createStatement":
+                    if (!readOnly) { // 실행할 sql 을 아직 모른다.
+                        wrote = true;
+                        markWrite();
+                    }
+                    break;
+                case "commit":
+                    if (wrote) {
+                        markWrite(); // 커밋한 뒤부터 다른 커넥션에 보인다.
+                    }
+                    break;
+                default:
+            }
+            return result;
+        }
+
+        private Connection open(boolean read) throws SQLException {
+            if (closed) {
+                throw new SQLException("connection is closed");
+            }
+            Connection con;
+            READ_HINT.set(read);
+            try {
+                con = determineTargetDataSource().getConnection();
+            } finally {
+                READ_HINT.remove();
+            }
+            if (!autoCommit) {
+                con.setAutoCommit(false);
+            }
+            if (readOnly) {
+                con.setReadOnly(true);
+            }
+            if (isolation != null) {
+                con.setTransactionIsolation(isolation);
+            }
+            return con;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package hello.jdbc.connection;
+
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 크기로 나누는 로그 파일 - SlowQueryDataSource 가 느린 쿼리를 남긴다.
+ * 파일이 maxBytes 를 넘으면 slow-query.log -> slow-query.log.1 -> slow-query.log.2 ... 로 밀어내고 새 파일에 쓴다.
+ * 지난 파일은 maxFiles 개까지 남기고 그보다 오래된 것은 지운다.
+ */
+class RollingLogFile {
+
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+
+    RollingLogFile(Path file, long maxBytes, int maxFiles) {
+        Assert.isTrue(maxBytes > 0, "maxBytes must be positive");
+        Assert.isTrue(maxFiles > 0, "maxFiles must be positive");
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    synchronized void write(String text) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (Files.exists(file) && Files.size(file) >= maxBytes) {
+            roll();
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(text);
+        }
+    }
+
+    // 번호가 큰 파일부터 하나씩 뒤로 민다.
+    private void roll() throws IOException {
+        Files.deleteIfExists(rolled(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path source = rolled(i);
+            if (Files.exists(source)) {
+                Files.move(source, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rolled(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
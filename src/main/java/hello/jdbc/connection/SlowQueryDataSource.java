@@ -0,0 +1,484 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.Temporal;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 느린 쿼리 로그 - 인덱스가 없거나 락을 기다려서 느려진 SQL 을 찾는다.
+ * 이 데이터소스가 준 커넥션으로 만든 statement 는 execute* 마다 실행 시간을 잰다.
+ *
+ * - 모든 실행은 SQL 별로 횟수, 총 시간, 최대 시간을 모은다. topByTotalTime() 이 총 시간 순 상위 topN 개를 돌려준다.
+ *   SQL 안의 문자열, 숫자 리터럴은 가린 SQL 로 모은다. 값만 다른 SQL 은 하나로 합쳐진다.
+ *   자주 도는 짧은 쿼리가 가끔 도는 느린 쿼리보다 DB 시간을 더 쓰는 경우가 많아서 총 시간으로 줄 세운다.
+ * - threshold 를 넘은 실행은 SQL, 파라미터, 실행 계획을 로그 파일에 남긴다.
+ *   파라미터 값은 남기지 않고 타입만 남긴다. (회원 ID, 금액) SQL 안의 문자열, 숫자 리터럴도 가린다.
+ *   실행 계획은 백그라운드 스레드가 따로 얻은 커넥션으로 EXPLAIN 해서 얻는다. 느린 쿼리를 실행한 스레드와 트랜잭션은 기다리지 않는다.
+ *   EXPLAIN 이 실패하면 SQLState 와 에러 코드만 남긴다. 예외 메시지에는 SQL 과 값이 들어 있을 수 있다.
+ *   계획에는 SQL 의 리터럴이 그대로 다시 나온다. 값이 SQL 에 직접 들어가는 execute(sql) 은 EXPLAIN 하지 않고, 계획도 한 번 더 가린다.
+ *   (prepareStatement 의 SQL 은 코드에 적힌 상수다. 값은 파라미터로 들어온다. 그래도 SQL 줄과 누적 값의 SQL 은 똑같이 가린다.)
+ *   같은 SQL 의 계획은 1 분 동안 다시 EXPLAIN 하지 않는다.
+ *   파일은 maxFileBytes 를 넘으면 굴려서 지난 파일을 maxFiles 개까지 남긴다. (RollingLogFile)
+ *   백그라운드 큐(1000 건)가 차면 버리고 droppedCount 를 올린다.
+ *
+ * executeQuery() 는 결과를 받기 시작할 때까지만 잰다. rs.next() 로 가져오는 시간은 들어가지 않는다.
+ * 예외로 끝난 실행(락 타임아웃 등)도 그때까지 걸린 시간으로 기록한다.
+ *
+ * SlowQueryDataSource dataSource = new SlowQueryDataSource(hikariDataSource, Duration.ofMillis(100), Path.of("logs/slow-query.log"));
+ * MemberRepository repository = new MemberRepositoryV5(dataSource);
+ */
+@Slf4j
+public class SlowQueryDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private static final Constructor<?> CONNECTION_PROXY = proxyConstructor(Connection.class);
+    private static final Constructor<?> STATEMENT_PROXY = proxyConstructor(Statement.class);
+    private static final Constructor<?> PREPARED_STATEMENT_PROXY = proxyConstructor(PreparedStatement.class);
+    private static final Constructor<?> CALLABLE_STATEMENT_PROXY = proxyConstructor(CallableStatement.class);
+
+    private static final Object[] NO_PARAMETERS = new Object[0];
+    private static final int MAX_DISTINCT_SQL = 1000; // 넘으면 새 SQL 은 OTHER_SQL 로 모은다. (IN 절 길이가 다른 SQL 등)
+    private static final String OTHER_SQL = "(other)";
+    private static final long PLAN_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w?$.])\\d+(?:\\.\\d+)?(?:[eE][+-]?\\d+)?(?![\\w.])");
+
+    private final long thresholdNanos;
+    private final RollingLogFile logFile;
+    private final int topN;
+    private final ThreadPoolExecutor writer;
+
+    private final ConcurrentHashMap<String, Accumulator> stats = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CachedPlan> plans = new ConcurrentHashMap<>();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder explainFailures = new LongAdder();
+
+    public SlowQueryDataSource(DataSource targetDataSource, Duration threshold, Path logFile) {
+        this(targetDataSource, threshold, logFile, 10 * 1024 * 1024, 5, 20);
+    }
+
+    public SlowQueryDataSource(DataSource targetDataSource, Duration threshold, Path logFile,
+                               long maxFileBytes, int maxFiles, int topN) {
+        super(targetDataSource);
+        Assert.isTrue(!threshold.isNegative(), "threshold must not be negative");
+        Assert.isTrue(topN > 0, "topN must be positive");
+        this.thresholdNanos = threshold.toNanos();
+        this.logFile = new RollingLogFile(logFile, maxFileBytes, maxFiles);
+        this.topN = topN;
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1000),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-log");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> dropped.increment());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return timedConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return timedConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    // 총 실행 시간이 긴 SQL 부터 topN 개
+    public List<StatementStats> topByTotalTime() {
+        return stats.values().stream()
+                .map(Accumulator::snapshot)
+                .sorted(Comparator.comparingLong(StatementStats::getTotalNanos).reversed())
+                .limit(topN)
+                .collect(Collectors.toList());
+    }
+
+    // threshold 를 넘은 실행 수
+    public long getSlowCount() {
+        return slow.sum();
+    }
+
+    // 백그라운드 큐가 차서 파일에 남기지 못한 느린 쿼리 수
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getExplainFailureCount() {
+        return explainFailures.sum();
+    }
+
+    // 지금까지 넘긴 느린 쿼리를 파일에 다 쓸 때까지 기다린다.
+    public boolean flush(Duration timeout) throws InterruptedException {
+        try {
+            writer.submit(() -> { }).get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    // 남은 느린 쿼리를 쓰고 백그라운드 스레드를 멈춘다.
+    @Override
+    public void close() throws InterruptedException {
+        writer.shutdown();
+        if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+            writer.shutdownNow();
+        }
+    }
+
+    private Connection timedConnection(Connection target) {
+        return (Connection) newProxy(CONNECTION_PROXY, new ConnectionHandler(target));
+    }
+
+    // 느린 실행만 파라미터를 복사한다. 빠른 실행은 누적 값만 더하고 객체를 만들지 않는다.
+    // plain - execute(sql) 처럼 값이 SQL 에 직접 들어갔을 수 있는 실행
+    private void record(String sql, boolean plain, Object[] parameters, int parameterCount, int batchSize,
+                        long elapsedNanos, Throwable failure) {
+        // execute(sql) 은 값만 다른 SQL 을 하나로 모으려고 가린 SQL 로 찾는다.
+        // prepareStatement 의 SQL 은 그대로 찾고, 가린 SQL 은 처음 한 번만 만든다. (매 실행 정규식을 돌리지 않는다.)
+        String key = plain ? redactLiterals(sql) : sql;
+        Accumulator accumulator = stats.get(key);
+        if (accumulator == null) {
+            accumulator = stats.computeIfAbsent(stats.size() < MAX_DISTINCT_SQL ? key : OTHER_SQL,
+                    k -> new Accumulator(redactLiterals(k)));
+        }
+        boolean isSlow = elapsedNanos >= thresholdNanos;
+        accumulator.add(elapsedNanos, isSlow);
+        if (!isSlow) {
+            return;
+        }
+
+        slow.increment();
+        long timestamp = System.currentTimeMillis();
+        String threadName = Thread.currentThread().getName();
+        String error = failure == null ? null : failure.getClass().getSimpleName();
+        Object[] bound = Arrays.copyOf(parameters, parameterCount);
+        writer.execute(() -> write(timestamp, threadName, sql, plain, bound, batchSize, elapsedNanos, error));
+    }
+
+    // 백그라운드 스레드
+    private void write(long timestamp, String threadName, String sql, boolean plain, Object[] parameters, int batchSize,
+                       long elapsedNanos, String error) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(Instant.ofEpochMilli(timestamp))
+                .append(" slow query ").append(String.format(Locale.ROOT, "%.3f", elapsedNanos / 1_000_000.0)).append("ms")
+                .append(" thread=").append(threadName);
+        if (error != null) {
+            sb.append(" error=").append(error);
+        }
+        sb.append('\n');
+        sb.append("  sql: ").append(redactLiterals(sql)).append('\n');
+        sb.append("  params: ").append(batchSize > 0 ? "batch of " + batchSize : redact(parameters)).append('\n');
+        String plan = batchSize > 0 ? null : explain(sql, plain, parameters);
+        if (plan != null) {
+            sb.append("  plan: ").append(plan.replace("\n", "\n        ")).append('\n');
+        }
+        try {
+            logFile.write(sb.toString());
+        } catch (IOException e) {
+            log.warn("slow query log write failed", e);
+        }
+    }
+
+    // 따로 얻은 커넥션으로 EXPLAIN 한다. 계획을 얻을 수 없으면 이유를 괄호로 돌려준다.
+    private String explain(String sql, boolean plain, Object[] parameters) {
+        if (!isExplainable(sql)) {
+            return null;
+        }
+        if (plain) {
+            return "(not explained: values in sql)";
+        }
+        long now = System.nanoTime();
+        CachedPlan cached = plans.get(sql);
+        if (cached != null && now - cached.createdAt < PLAN_TTL_NANOS) {
+            return cached.plan;
+        }
+        for (Object parameter : parameters) {
+            if (!isBindable(parameter)) {
+                return "(not explained: " + parameter.getClass().getSimpleName() + " parameter)";
+            }
+        }
+
+        // 실제 값으로 바인딩해야 인덱스를 탈지 알 수 있다. 값은 파일에 남기지 않는다.
+        try (Connection con = obtainTargetDataSource().getConnection();
+             PreparedStatement pstmt = con.prepareStatement("explain " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                pstmt.setObject(i + 1, parameters[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (plan.length() > 0) {
+                        plan.append('\n');
+                    }
+                    plan.append(rs.getString(1));
+                }
+            }
+            if (plans.size() >= MAX_DISTINCT_SQL) {
+                plans.clear();
+            }
+            // 계획에는 SQL 의 상수가 다시 나온다. SQL 줄과 똑같이 가린다.
+            String redacted = redactLiterals(plan.toString());
+            plans.put(sql, new CachedPlan(redacted, now));
+            return redacted;
+        } catch (SQLException e) {
+            explainFailures.increment();
+            log.debug("explain failed sql = {}, sqlState = {}, errorCode = {}",
+                    redactLiterals(sql), e.getSQLState(), e.getErrorCode());
+            return "(explain failed: sqlState=" + e.getSQLState() + ", errorCode=" + e.getErrorCode() + ")";
+        }
+    }
+
+    private static boolean isExplainable(String sql) {
+        String head = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return head.startsWith("select") || head.startsWith("update") || head.startsWith("delete")
+                || head.startsWith("insert") || head.startsWith("merge") || head.startsWith("with");
+    }
+
+    private static boolean isBindable(Object parameter) {
+        return parameter == null || parameter instanceof String || parameter instanceof Number
+                || parameter instanceof Boolean || parameter instanceof java.util.Date || parameter instanceof Temporal;
+    }
+
+    // 값 대신 타입만 남긴다. [String, Integer, null]
+    private static String redact(Object[] parameters) {
+        return Arrays.stream(parameters)
+                .map(parameter -> parameter == null ? "null" : parameter.getClass().getSimpleName())
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    // createStatement() 로 값을 SQL 에 직접 넣은 경우를 위해 문자열, 숫자 리터럴을 가린다.
+    // 숫자는 식별자 안(member2, PRIMARY_KEY_8)과 H2 계획의 파라미터 번호(?1)는 건드리지 않는다.
+    private static String redactLiterals(String sql) {
+        return NUMBER_LITERAL.matcher(STRING_LITERAL.matcher(sql).replaceAll("'***'")).replaceAll("***");
+    }
+
+    // 프록시 클래스는 한 번만 만들고 생성자를 재사용한다.
+    @SuppressWarnings("deprecation")
+    private static Constructor<?> proxyConstructor(Class<?> type) {
+        try {
+            return Proxy.getProxyClass(type.getClassLoader(), type).getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object newProxy(Constructor<?> constructor, InvocationHandler handler) {
+        try {
+            return constructor.newInstance(handler);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * 리포지토리에 넘겨주는 커넥션 - 만든 statement 를 감싼다.
+     */
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "createStatement":
+                    return newProxy(STATEMENT_PROXY,
+                            new StatementHandler((Connection) proxy, (Statement) SlowQueryDataSource.invoke(target, method, args), null));
+                case "prepareStatement":
+                    return newProxy(PREPARED_STATEMENT_PROXY,
+                            new StatementHandler((Connection) proxy, (Statement) SlowQueryDataSource.invoke(target, method, args), (String) args[0]));
+                case "prepareCall":
+                    return newProxy(CALLABLE_STATEMENT_PROXY,
+                            new StatementHandler((Connection) proxy, (Statement) SlowQueryDataSource.invoke(target, method, args), (String) args[0]));
+                default:
+            }
+            return SlowQueryDataSource.invoke(target, method, args);
+        }
+    }
+
+    /**
+     * 실행 시간을 재는 statement
+     * set*(index, value) 로 바인딩한 값을 모아 둔다. statement 는 한 번에 한 스레드만 쓰기 때문에 동기화하지 않는다.
+     */
+    private class StatementHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final Statement target;
+        private final String sql; // createStatement() 면 null, 실행할 때 받는다.
+        private Object[] parameters = NO_PARAMETERS;
+        private int parameterCount;
+        private int batchSize;
+        private String batchSql;
+
+        StatementHandler(Connection connection, Statement target, String sql) {
+            this.connection = connection;
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getConnection":
+                    return connection;
+                case "clearParameters":
+                    Arrays.fill(parameters, null);
+                    parameterCount = 0;
+                    break;
+                case "addBatch":
+                    batchSize++;
+                    if (args != null && batchSql == null) {
+                        batchSql = (String) args[0]; // Statement.addBatch(sql) - 첫 SQL 로 모은다.
+                    }
+                    break;
+                case "clearBatch":
+                    batchSize = 0;
+                    batchSql = null;
+                    break;
+                case "execute":
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                    return timed(method, args, args == null ? sql : (String) args[0], false);
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return timed(method, args, sql == null ? batchSql : sql, true);
+                default:
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                    }
+            }
+            return SlowQueryDataSource.invoke(target, method, args);
+        }
+
+        private Object timed(Method method, Object[] args, String executedSql, boolean batch) throws Throwable {
+            long start = System.nanoTime();
+            Throwable failure = null;
+            try {
+                return SlowQueryDataSource.invoke(target, method, args);
+            } catch (Throwable e) {
+                failure = e;
+                throw e;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                if (executedSql != null) {
+                    if (batch || args != null) { // 배치는 마지막 값만 남아 있고, execute(sql) 은 바인딩이 없다.
+                        record(executedSql, args != null || sql == null, NO_PARAMETERS, 0, batch ? batchSize : 0, elapsed, failure);
+                    } else {
+                        record(executedSql, false, parameters, parameterCount, 0, elapsed, failure);
+                    }
+                }
+                if (batch) {
+                    batchSize = 0;
+                    batchSql = null;
+                }
+            }
+        }
+
+        private void bind(int index, Object value) {
+            if (index < 1) {
+                return;
+            }
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+    }
+
+    /**
+     * SQL 하나의 누적 값 - 여러 스레드가 동시에 더한다.
+     */
+    private static class Accumulator {
+
+        private final String sql; // 리터럴을 가린 SQL
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder slowCount = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Accumulator(String sql) {
+            this.sql = sql;
+        }
+
+        void add(long elapsedNanos, boolean isSlow) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            if (isSlow) {
+                slowCount.increment();
+            }
+            if (elapsedNanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+            }
+        }
+
+        StatementStats snapshot() {
+            return new StatementStats(sql, count.sum(), totalNanos.sum(), maxNanos.get(), slowCount.sum());
+        }
+    }
+
+    private static class CachedPlan {
+
+        private final String plan;
+        private final long createdAt;
+
+        CachedPlan(String plan, long createdAt) {
+            this.plan = plan;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package hello.jdbc.connection;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * SQL 실행 기록 한 건 - SqlTracer.dump()
+ * rows 는 변경된 행 수, 조회는 -1 이다.
+ * acquireNanos 는 커넥션을 얻는 데 걸린 시간, 이미 얻은 커넥션으로 실행했으면 0 이다.
+ * executeNanos 는 커넥션을 얻은 뒤부터 실행이 끝날 때까지 걸린 시간이다. (prepareStatement, 파라미터 바인딩 포함)
+ */
+@Getter
+@ToString
+public class SqlTrace {
+
+    private final long sequence;
+    private final String sql;
+    private final int bindCount;
+    private final int rows;
+    private final long acquireNanos;
+    private final long executeNanos;
+    private final String threadName;
+
+    SqlTrace(long sequence, String sql, int bindCount, int rows, long acquireNanos, long executeNanos, String threadName) {
+        this.sequence = sequence;
+        this.sql = sql;
+        this.bindCount = bindCount;
+        this.rows = rows;
+        this.acquireNanos = acquireNanos;
+        this.executeNanos = executeNanos;
+        this.threadName = threadName;
+    }
+}
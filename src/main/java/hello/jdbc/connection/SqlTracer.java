@@ -0,0 +1,265 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SQL 추적 - 커넥션을 얻을 때마다 INFO 로그를 남기던 것을 대신한다.
+ * 요청이 많으면 로그 한 줄(문자열 포맷, 어펜더 락, I/O)이 SQL 실행만큼 비싸지고 로그 양도 감당할 수 없다.
+ *
+ * 리포지토리는 커넥션을 얻은 뒤 acquired(시작 시각), 실행한 뒤 executed(sql, 바인딩 수, 행 수) 를 부른다.
+ * 그 사이 값은 스레드마다 하나인 객체에 담아서, 기록할 때 새 객체를 만들지 않는다.
+ *
+ * - OFF     : 아무것도 기록하지 않는다.
+ * - SAMPLED : sampleRate 번에 한 번만 기록한다. (기본값, 100 번에 한 번)
+ * - FULL    : 모두 기록한다.
+ * 기록은 고정 크기 링 버퍼에 들어간다. 칸마다 순번을 두고 칸을 CAS 로 차지해서 덮어쓰며, 오래된 기록은 밀려난다.
+ * dump() 는 버퍼에 남은 기록을 오래된 것부터 돌려준다. 쓰는 중이던 칸은 건너뛴다.
+ * 로그에는 기록 중 초당 logPerSecond 건까지만 INFO 로 남긴다.
+ *
+ * -Dhello.jdbc.sql-trace=full|sampled|off, -Dhello.jdbc.sql-trace-sample-rate=100 으로 정하거나 setMode() 로 바꾼다.
+ * 잘못된 값은 경고를 남기고 SAMPLED, 표본 비율 1 이상으로 바로잡는다.
+ */
+@Slf4j
+public class SqlTracer {
+
+    public enum Mode {
+        OFF, SAMPLED, FULL
+    }
+
+    // SHARED 를 만들기 전에 읽어야 한다.
+    private static final Mode DEFAULT_MODE = parseMode(System.getProperty("hello.jdbc.sql-trace", "sampled"));
+    private static final int DEFAULT_SAMPLE_RATE = parseSampleRate(Integer.getInteger("hello.jdbc.sql-trace-sample-rate", 100));
+
+    private static final SqlTracer SHARED = new SqlTracer(1024);
+    private static final long WRITING = -2; // 칸을 차지하고 쓰는 중 (-1 은 아직 쓴 적 없는 칸)
+    private static final VarHandle SLOT_SEQ = slotSeqHandle();
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadLocal<Pending> pending = ThreadLocal.withInitial(Pending::new);
+
+    private volatile Mode mode = DEFAULT_MODE;
+    private volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+    private volatile int logPerSecond = 10;
+
+    private final AtomicLong logSecond = new AtomicLong();
+    private final AtomicInteger loggedInSecond = new AtomicInteger();
+
+    // capacity 는 2 의 거듭제곱으로 올린다.
+    public SqlTracer(int capacity) {
+        Assert.isTrue(capacity > 0 && capacity <= 1 << 20, "capacity must be in (0, 2^20]");
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        size = Math.max(size, 1);
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+    }
+
+    public static SqlTracer shared() {
+        return SHARED;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        Assert.notNull(mode, "mode must not be null");
+        this.mode = mode;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        Assert.isTrue(sampleRate > 0, "sampleRate must be positive");
+        this.sampleRate = sampleRate;
+    }
+
+    // 0 이면 로그를 남기지 않는다.
+    public void setLogPerSecond(int logPerSecond) {
+        Assert.isTrue(logPerSecond >= 0, "logPerSecond must not be negative");
+        this.logPerSecond = logPerSecond;
+    }
+
+    // 커넥션을 얻었다. startNanos 는 얻기 시작한 System.nanoTime()
+    public void acquired(long startNanos) {
+        Pending p = start();
+        if (p == null) {
+            return;
+        }
+        p.acquiredAt = System.nanoTime();
+        p.acquireNanos = p.acquiredAt - startNanos;
+    }
+
+    // 이미 얻은 커넥션(트랜잭션 커넥션을 파라미터로 받은 경우)으로 실행을 시작한다.
+    public void begin() {
+        Pending p = start();
+        if (p == null) {
+            return;
+        }
+        p.acquiredAt = System.nanoTime();
+        p.acquireNanos = 0;
+    }
+
+    // 실행이 끝났다. rows 는 변경된 행 수, 조회는 -1
+    public void executed(String sql, int bindCount, int rows) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        Pending p = pending.get();
+        if (!p.active) {
+            return; // 표본이 아니다.
+        }
+        p.active = false;
+        long executeNanos = System.nanoTime() - p.acquiredAt;
+        long seq = record(sql, bindCount, rows, p.acquireNanos, executeNanos);
+        logSampled(seq, sql, bindCount, rows, p.acquireNanos, executeNanos);
+    }
+
+    // 버퍼에 남은 기록, 오래된 것부터
+    public List<SqlTrace> dump() {
+        long end = sequence.get();
+        long start = Math.max(0, end - slots.length);
+        List<SqlTrace> traces = new ArrayList<>((int) (end - start));
+        for (long seq = start; seq < end; seq++) {
+            Slot slot = slots[(int) (seq & mask)];
+            if (slot.seq != seq) {
+                continue; // 쓰는 중이거나 이미 덮어썼다.
+            }
+            String sql = slot.sql;
+            int bindCount = slot.bindCount;
+            int rows = slot.rows;
+            long acquireNanos = slot.acquireNanos;
+            long executeNanos = slot.executeNanos;
+            String threadName = slot.threadName;
+            VarHandle.acquireFence(); // 위에서 읽은 값이 아래 순번 확인보다 늦게 읽히지 않도록
+            if (slot.seq == seq) {
+                traces.add(new SqlTrace(seq, sql, bindCount, rows, acquireNanos, executeNanos, threadName));
+            }
+        }
+        return traces;
+    }
+
+    // 지금까지 기록한 건수 (버퍼에서 밀려난 것 포함)
+    public long getRecordedCount() {
+        return sequence.get();
+    }
+
+    // 이번 실행을 기록하면 스레드의 Pending, 아니면 null
+    // 앞선 실행이 예외로 끝나서 executed() 가 불리지 않았을 수 있으므로 표본이 아니어도 지난 값을 지운다.
+    private Pending start() {
+        Mode current = mode;
+        if (current == Mode.OFF) {
+            return null;
+        }
+        Pending p = pending.get();
+        if (current == Mode.SAMPLED && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            p.active = false;
+            return null;
+        }
+        p.active = true;
+        return p;
+    }
+
+    // 칸의 순번을 CAS 로 WRITING 으로 바꿔서 칸을 차지하고, 값을 쓴 뒤 새 순번으로 연다. (읽는 쪽은 앞뒤 순번이 같을 때만 믿는다.)
+    // 버퍼를 한 바퀴 돈 쓰기(seq + 칸 수)와 같은 칸에서 만나도 한 번에 하나만 쓴다.
+    // 늦게 온 쓰기가 더 새로운 기록을 덮지 않도록 칸의 순번이 자기보다 작을 때만 쓴다.
+    private long record(String sql, int bindCount, int rows, long acquireNanos, long executeNanos) {
+        long seq = sequence.getAndIncrement();
+        Slot slot = slots[(int) (seq & mask)];
+        for (int spins = 0; ; spins++) {
+            long current = slot.seq;
+            if (current == WRITING) {
+                // 다른 쓰기가 값 몇 개를 쓰는 동안만 기다린다. 그 스레드가 CPU 를 뺏겼으면 양보한다.
+                if (spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+                continue;
+            }
+            if (current > seq) {
+                return seq; // 한 바퀴 뒤의 기록이 이미 들어왔다. 이 기록은 밀려난 것으로 친다.
+            }
+            if (SLOT_SEQ.compareAndSet(slot, current, WRITING)) {
+                break;
+            }
+        }
+        slot.sql = sql;
+        slot.bindCount = bindCount;
+        slot.rows = rows;
+        slot.acquireNanos = acquireNanos;
+        slot.executeNanos = executeNanos;
+        slot.threadName = Thread.currentThread().getName();
+        slot.seq = seq;
+        return seq;
+    }
+
+    private void logSampled(long seq, String sql, int bindCount, int rows, long acquireNanos, long executeNanos) {
+        int limit = logPerSecond;
+        if (limit == 0 || !log.isInfoEnabled()) {
+            return;
+        }
+        long second = System.nanoTime() / 1_000_000_000L;
+        long current = logSecond.get();
+        if (current != second && logSecond.compareAndSet(current, second)) {
+            loggedInSecond.set(0);
+        }
+        if (loggedInSecond.incrementAndGet() <= limit) {
+            log.info("sql trace #{} sql = {}, binds = {}, rows = {}, acquire = {}us, execute = {}us",
+                    seq, sql, bindCount, rows, acquireNanos / 1000, executeNanos / 1000);
+        }
+    }
+
+    static Mode parseMode(String value) {
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warn("unknown hello.jdbc.sql-trace = {}, using SAMPLED", value);
+            return Mode.SAMPLED;
+        }
+    }
+
+    static int parseSampleRate(int value) {
+        if (value < 1) {
+            log.warn("hello.jdbc.sql-trace-sample-rate = {} must be positive, using 1", value);
+            return 1;
+        }
+        return value;
+    }
+
+    private static VarHandle slotSeqHandle() {
+        try {
+            return MethodHandles.lookup().findVarHandle(Slot.class, "seq", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Pending {
+        private boolean active;
+        private long acquiredAt;
+        private long acquireNanos;
+    }
+
+    private static class Slot {
+        private volatile long seq = -1;
+        private String sql;
+        private int bindCount;
+        private int rows;
+        private long acquireNanos;
+        private long executeNanos;
+        private String threadName;
+    }
+}
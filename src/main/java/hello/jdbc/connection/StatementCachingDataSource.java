@@ -0,0 +1,308 @@
+package hello.jdbc.connection;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PreparedStatement 캐시
+ * 리포지토리는 호출마다 con.prepareStatement(sql) 하고 close() 한다. 그때마다 sql 파싱과 객체 생성 비용을 낸다.
+ * 이 데이터소스가 만든 커넥션은 sql 별로 PreparedStatement 를 LRU 로 캐시해 두고, close() 하면 닫지 않고 캐시로 돌려받는다.
+ *
+ * 커넥션 풀 아래에 둬야 물리 커넥션마다 캐시가 붙는다. 풀이 커넥션을 버릴 때(close) 캐시된 statement 도 같이 닫는다.
+ * HikariDataSource dataSource = new HikariDataSource();
+ * dataSource.setDataSource(new StatementCachingDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD), 64));
+ *
+ * 리포지토리 코드는 바꿀 필요 없다. getConnection()/close() 그대로 쓰면 된다.
+ *
+ * 반납할 때 다음에 꺼내 쓰는 쪽이 앞사람의 상태를 보지 않도록 되돌린다.
+ * - 열려 있는 ResultSet 을 닫고, 파라미터와 쌓아 둔 배치를 지운다.
+ * - setMaxRows, setFetchSize, setQueryTimeout, setFetchDirection, setMaxFieldSize 로 바꾼 값은 처음 값으로 돌린다.
+ * - 그 밖의 설정(setPoolable, setCursorName 등)을 바꾼 statement 는 캐시하지 않고 닫는다.
+ * ResultSet.getStatement() 는 프록시가 아니라 실제 statement 를 돌려준다. 그걸 닫으면 캐시에 돌아가지 않고 버려질 뿐이다.
+ */
+public class StatementCachingDataSource extends DelegatingDataSource {
+
+    // 프록시 클래스는 한 번만 만들고 생성자를 재사용한다. (Proxy.newProxyInstance 는 호출마다 클래스 조회 비용이 든다.)
+    @SuppressWarnings("deprecation")
+    private static final Constructor<?> STATEMENT_PROXY = proxyConstructor(
+            Proxy.getProxyClass(PreparedStatement.class.getClassLoader(), PreparedStatement.class));
+
+    private final int cacheSize; // 커넥션 하나가 캐시할 statement 수
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StatementCachingDataSource(DataSource targetDataSource, int cacheSize) {
+        super(targetDataSource);
+        Assert.isTrue(cacheSize > 0, "cacheSize must be positive");
+        this.cacheSize = cacheSize;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return cachingConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return cachingConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Connection cachingConnection(Connection target) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new CachingConnectionHandler(target));
+    }
+
+    private static Constructor<?> proxyConstructor(Class<?> proxyClass) {
+        try {
+            return proxyClass.getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object newProxy(Constructor<?> constructor, InvocationHandler handler) {
+        try {
+            return constructor.newInstance(handler);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * 물리 커넥션 하나에 붙는 캐시
+     * 커넥션은 한 번에 한 스레드만 쓰기 때문에 동기화하지 않는다.
+     */
+    private class CachingConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final Map<String, PreparedStatement> cache;
+
+        CachingConnectionHandler(Connection target) {
+            this.target = target;
+            // accessOrder = true - 가장 오래 안 쓴 statement 부터 닫는다.
+            this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > cacheSize) {
+                        JdbcUtils.closeStatement(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "prepareStatement":
+                    if (args.length == 1) { // prepareStatement(sql) 만 캐시한다.
+                        return borrow((Connection) proxy, (String) args[0]);
+                    }
+                    break;
+                case "close":
+                    closeCache();
+                    break;
+                default:
+            }
+            return StatementCachingDataSource.invoke(target, method, args);
+        }
+
+        // 캐시에서 꺼낸다. 같은 sql 을 동시에 두 개 열 수 있도록 꺼낸 statement 는 반납 전까지 캐시에서 빠진다.
+        private PreparedStatement borrow(Connection proxy, String sql) throws SQLException {
+            PreparedStatement pstmt = cache.remove(sql);
+            if (pstmt == null || pstmt.isClosed()) {
+                misses.increment();
+                pstmt = target.prepareStatement(sql);
+            } else {
+                hits.increment();
+            }
+            return (PreparedStatement) newProxy(STATEMENT_PROXY, new CachedStatementHandler(proxy, this, sql, pstmt));
+        }
+
+        // close() 된 statement 를 캐시로 돌려받는다. 상태는 CachedStatementHandler 가 되돌려 놓은 뒤다.
+        private void giveBack(String sql, PreparedStatement pstmt) throws SQLException {
+            if (target.isClosed() || pstmt.isClosed()) {
+                return;
+            }
+            PreparedStatement previous = cache.put(sql, pstmt);
+            if (previous != null) {
+                JdbcUtils.closeStatement(previous);
+            }
+        }
+
+        private void closeCache() {
+            for (PreparedStatement pstmt : cache.values()) {
+                JdbcUtils.closeStatement(pstmt);
+            }
+            cache.clear();
+        }
+    }
+
+    /**
+     * 리포지토리에 넘겨주는 statement
+     * close() 하면 실제로 닫지 않고 상태를 되돌려서 캐시로 돌려준다.
+     */
+    private static class CachedStatementHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final CachingConnectionHandler owner;
+        private final String sql;
+        private final PreparedStatement target;
+        private boolean closed;
+
+        private ResultSet resultSet; // executeQuery(), getResultSet() 으로 내준 것
+        private ResultSet generatedKeys;
+        private boolean batched;
+        private StatementSettings settings; // 설정을 처음 바꿀 때 이전 값을 담아 둔다.
+        private boolean uncacheable;
+
+        CachedStatementHandler(Connection connection, CachingConnectionHandler owner, String sql, PreparedStatement target) {
+            this.connection = connection;
+            this.owner = owner;
+            this.sql = sql;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        close();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return connection;
+                default:
+            }
+            if (closed) {
+                throw new SQLException("statement is closed");
+            }
+            switch (method.getName()) {
+                case "setMaxRows":
+                case "setFetchSize":
+                case "setQueryTimeout":
+                case "setFetchDirection":
+                case "setMaxFieldSize":
+                    if (settings == null) {
+                        settings = new StatementSettings(target);
+                    }
+                    break;
+                case "setLargeMaxRows":
+                case "setPoolable":
+                case "setCursorName":
+                case "setEscapeProcessing":
+                case "closeOnCompletion":
+                    uncacheable = true;
+                    break;
+                case "addBatch":
+                    batched = true;
+                    break;
+                default:
+            }
+            Object result = StatementCachingDataSource.invoke(target, method, args);
+            if (result instanceof ResultSet) {
+                if ("getGeneratedKeys".equals(method.getName())) {
+                    generatedKeys = (ResultSet) result;
+                } else {
+                    resultSet = (ResultSet) result;
+                }
+            }
+            return result;
+        }
+
+        // 다음 사람이 쓸 수 있게 되돌리고 캐시로 돌려준다. 되돌리지 못하면 닫는다.
+        private void close() throws SQLException {
+            JdbcUtils.closeResultSet(resultSet);
+            JdbcUtils.closeResultSet(generatedKeys);
+            if (uncacheable) {
+                JdbcUtils.closeStatement(target);
+                return;
+            }
+            try {
+                if (settings != null) {
+                    settings.restore(target);
+                }
+                if (batched) {
+                    target.clearBatch();
+                }
+                target.clearParameters();
+            } catch (SQLException e) {
+                JdbcUtils.closeStatement(target);
+                throw e;
+            }
+            owner.giveBack(sql, target);
+        }
+    }
+
+    /**
+     * 되돌릴 statement 설정 - 바꾸기 전 값
+     */
+    private static class StatementSettings {
+
+        private final int maxRows;
+        private final int fetchSize;
+        private final int queryTimeout;
+        private final int fetchDirection;
+        private final int maxFieldSize;
+
+        StatementSettings(PreparedStatement pstmt) throws SQLException {
+            this.maxRows = pstmt.getMaxRows();
+            this.fetchSize = pstmt.getFetchSize();
+            this.queryTimeout = pstmt.getQueryTimeout();
+            this.fetchDirection = pstmt.getFetchDirection();
+            this.maxFieldSize = pstmt.getMaxFieldSize();
+        }
+
+        void restore(PreparedStatement pstmt) throws SQLException {
+            pstmt.setMaxRows(maxRows);
+            pstmt.setFetchSize(fetchSize);
+            pstmt.setQueryTimeout(queryTimeout);
+            pstmt.setFetchDirection(fetchDirection);
+            pstmt.setMaxFieldSize(maxFieldSize);
+        }
+    }
+}
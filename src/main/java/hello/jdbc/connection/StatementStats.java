@@ -0,0 +1,31 @@
+package hello.jdbc.connection;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * SQL 별 누적 실행 시간 - SlowQueryDataSource.topByTotalTime()
+ * count, totalNanos, maxNanos 는 느리지 않은 실행까지 모두 센다. slowCount 는 기준 시간을 넘은 실행 수다.
+ */
+@Getter
+@ToString
+public class StatementStats {
+
+    private final String sql;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long slowCount;
+
+    StatementStats(String sql, long count, long totalNanos, long maxNanos, long slowCount) {
+        this.sql = sql;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.slowCount = slowCount;
+    }
+
+    public double getMeanNanos() {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+}
@@ -9,6 +9,7 @@ public class Member {
 
     private String memberId; // 회원 id
     private int money; // 회원이 소지한 금액
+    private Long version; // 낙관적 락 버전 - version 컬럼으로 조회했을 때만 채워진다. (VersionedMemberRepository)
 
     // 기본 생성자
     public Member() {
@@ -18,4 +19,10 @@ public class Member {
         this.memberId = memberId;
         this.money = money;
     }
+
+    public Member(String memberId, int money, Long version) {
+        this.memberId = memberId;
+        this.money = money;
+        this.version = version;
+    }
 }
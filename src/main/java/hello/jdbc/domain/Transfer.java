@@ -0,0 +1,22 @@
+package hello.jdbc.domain;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+// 계좌이체 한 건 - fromId 회원이 toId 회원에게 money 를 보낸다.
+@Getter
+@ToString
+@EqualsAndHashCode
+public class Transfer {
+
+    private final String fromId;
+    private final String toId;
+    private final int money;
+
+    public Transfer(String fromId, String toId, int money) {
+        this.fromId = fromId;
+        this.toId = toId;
+        this.money = money;
+    }
+}
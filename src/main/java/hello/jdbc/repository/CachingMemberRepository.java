@@ -0,0 +1,261 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 회원 조회 캐시 - MemberRepository 데코레이터
+ * findById() 결과를 최대 maximumSize 건, ttl 동안 메모리에 들고 있는다. 넘치면 가장 오래 안 쓴 회원부터 밀어낸다.
+ *
+ * 트랜잭션 안에서 변경한 회원은 커밋된 뒤에 캐시에서 지운다. 롤백되면 캐시는 그대로 둔다.
+ * 트랜잭션 안에서 변경한 회원을 같은 트랜잭션에서 다시 조회하면 캐시를 건너뛰고 DB 에서 읽는다.
+ * 캐시는 트랜잭션 밖에서 읽은 값으로만 채운다. 그래서 커밋되지 않은 값이 캐시에 들어가거나 다른 스레드에 보이는 일은 없다.
+ */
+public class CachingMemberRepository implements MemberRepository {
+
+    private final MemberRepository target;
+    private final int maximumSize;
+    private final long ttlNanos;
+
+    private final Map<String, CachedMember> cache;
+    // 무효화할 때마다 증가한다. 조회 도중에 무효화가 끼어들었으면 읽어온 값을 캐시에 넣지 않는다.
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingMemberRepository(MemberRepository target, int maximumSize, Duration ttl) {
+        Assert.isTrue(maximumSize > 0, "maximumSize must be positive");
+        this.target = target;
+        this.maximumSize = maximumSize;
+        this.ttlNanos = ttl.toNanos();
+        // accessOrder = true - LRU
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMember> eldest) {
+                if (size() > CachingMemberRepository.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Member save(Member member) {
+        Member saved = target.save(member);
+        written(List.of(member.getMemberId()));
+        return saved;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        if (writtenInTransaction(memberId)) {
+            return target.findById(memberId);
+        }
+
+        Member cached = get(memberId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        long stamp = invalidations.get();
+        Member member = target.findById(memberId); // 없는 회원은 예외가 그대로 나간다.
+        put(member, stamp);
+        return copy(member);
+    }
+
+    // 락을 걸고 최신 값을 읽어야 하므로 캐시를 건너뛴다.
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return target.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        target.update(memberId, money);
+        written(List.of(memberId));
+    }
+
+    @Override
+    public void delete(String memberId) {
+        target.delete(memberId);
+        written(List.of(memberId));
+    }
+
+    @Override
+    public SaveAllResult saveAll(Collection<Member> members) {
+        SaveAllResult result = target.saveAll(members);
+        List<String> memberIds = new ArrayList<>(members.size());
+        for (Member member : members) {
+            memberIds.add(member.getMemberId());
+        }
+        written(memberIds);
+        return result;
+    }
+
+    // 캐시에 있는 회원은 캐시에서, 나머지는 한 번에 조회해서 캐시에 넣는다.
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        Map<String, Member> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String memberId : memberIds) {
+            Member cached = writtenInTransaction(memberId) ? null : get(memberId);
+            if (cached != null) {
+                hits.increment();
+                result.put(memberId, cached);
+            } else {
+                misses.increment();
+                missing.add(memberId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long stamp = invalidations.get();
+        for (Member member : target.findAllByIds(missing).values()) {
+            put(member, stamp);
+            result.put(member.getMemberId(), copy(member));
+        }
+        return result;
+    }
+
+    // 전체 조회와 페이지 조회는 캐시하지 않는다.
+    @Override
+    public Stream<Member> streamAll() {
+        return target.streamAll();
+    }
+
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        return target.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public boolean adjustBalance(String memberId, int delta) {
+        boolean adjusted = target.adjustBalance(memberId, delta);
+        written(List.of(memberId));
+        return adjusted;
+    }
+
+    @Override
+    public List<String> adjustBalances(Map<String, Integer> deltas) {
+        List<String> failedIds = target.adjustBalances(deltas);
+        written(deltas.keySet());
+        return failedIds;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    private synchronized Member get(String memberId) {
+        CachedMember entry = cache.get(memberId);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.loadedAt >= ttlNanos) {
+            cache.remove(memberId);
+            return null;
+        }
+        return copy(entry.member);
+    }
+
+    // 트랜잭션 안에서 읽은 값은 격리 수준에 따라 이미 지나간 스냅샷일 수 있어서 캐시에 넣지 않는다.
+    private synchronized void put(Member member, long stamp) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        if (invalidations.get() == stamp) {
+            cache.put(member.getMemberId(), new CachedMember(copy(member), System.nanoTime()));
+        }
+    }
+
+    private synchronized void invalidate(Collection<String> memberIds) {
+        invalidations.incrementAndGet();
+        for (String memberId : memberIds) {
+            cache.remove(memberId);
+        }
+    }
+
+    // 변경된 회원 - 트랜잭션 밖이면 바로 지우고, 트랜잭션 안이면 커밋된 뒤에 지운다.
+    @SuppressWarnings("unchecked")
+    private void written(Collection<String> memberIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(memberIds);
+            return;
+        }
+        Set<String> written = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (written == null) {
+            Set<String> newWritten = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, newWritten);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CachingMemberRepository.this);
+                    if (status != STATUS_ROLLED_BACK) { // 커밋 여부를 모를 때도 지운다.
+                        invalidate(newWritten);
+                    }
+                }
+            });
+            written = newWritten;
+        }
+        written.addAll(memberIds);
+    }
+
+    private boolean writtenInTransaction(String memberId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        Set<?> written = (Set<?>) TransactionSynchronizationManager.getResource(this);
+        return written != null && written.contains(memberId);
+    }
+
+    // Member 는 변경 가능한 객체라서 캐시 안의 값과 호출한 쪽이 받는 값을 분리한다.
+    // version 도 같이 복사해야 캐시로 읽은 값으로 낙관적 락 update 를 할 수 있다.
+    private static Member copy(Member member) {
+        return new Member(member.getMemberId(), member.getMoney(), member.getVersion());
+    }
+
+    private static class CachedMember {
+        private final Member member;
+        private final long loadedAt;
+
+        CachedMember(Member member, long loadedAt) {
+            this.member = member;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLErrorCodes;
+import org.springframework.jdbc.support.SQLErrorCodesFactory;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 예외 변환기 레지스트리 - DataSource 마다 DB 에러 코드를 시작할 때 한 번 풀어 두고, 리포지토리들이 변환기를 같이 쓴다.
+ *
+ * new SQLErrorCodeSQLExceptionTranslator(dataSource) 는 처음 예외를 변환할 때 커넥션을 빌려서 DB 종류를 알아낸다.
+ * 장애로 예외가 쏟아질 때는 커넥션 풀이 이미 바닥난 경우가 많아서, 예외를 변환하려고 커넥션을 기다리다 타임아웃이 난다.
+ * translator(dataSource) 는 리포지토리를 만들 때(애플리케이션 시작 시) 불러서 그때 메타데이터를 읽어 둔다.
+ * 변환기는 DB 종류(H2, MySQL ...)마다 하나라서 같은 DB 를 가리키는 DataSource 들도 같은 표를 쓴다.
+ *
+ * 시작할 때 DB 에 붙지 못하면 캐시하지 않고 스프링의 지연 변환기를 돌려준다. (이전과 같은 동작)
+ */
+@Slf4j
+public class ExceptionTranslatorRegistry {
+
+    private static final ExceptionTranslatorRegistry SHARED = new ExceptionTranslatorRegistry();
+
+    // DataSource 가 정리되면 항목도 사라지도록 약한 참조로 잡는다.
+    private final Map<DataSource, PreResolvedExceptionTranslator> byDataSource = new ConcurrentReferenceHashMap<>(
+            16, ConcurrentReferenceHashMap.ReferenceType.WEAK);
+    private final Map<String, PreResolvedExceptionTranslator> byProductName = new ConcurrentHashMap<>();
+
+    public static ExceptionTranslatorRegistry shared() {
+        return SHARED;
+    }
+
+    public SQLExceptionTranslator translator(DataSource dataSource) {
+        PreResolvedExceptionTranslator translator = byDataSource.get(dataSource);
+        if (translator != null) {
+            return translator;
+        }
+        SQLErrorCodes errorCodes = SQLErrorCodesFactory.getInstance().resolveErrorCodes(dataSource);
+        if (errorCodes == null) {
+            log.warn("could not resolve sql error codes, translate lazily dataSource = {}", dataSource);
+            return new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        }
+        String productName = errorCodes.getDatabaseProductName() != null ? errorCodes.getDatabaseProductName() : "";
+        translator = byProductName.computeIfAbsent(productName, name -> new PreResolvedExceptionTranslator(errorCodes));
+        byDataSource.put(dataSource, translator);
+        return translator;
+    }
+}
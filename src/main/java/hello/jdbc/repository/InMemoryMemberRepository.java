@@ -0,0 +1,240 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * 메모리 회원 저장소 - DB 없이 MemberRepository 를 구현한다. (자주 쓰는 데이터, 테스트용)
+ * 잔액은 String -> int 오픈 어드레싱 맵(StringIntHashMap)에 그대로 들고 있다. 회원마다 Member 객체나 Integer 를 만들지 않는다.
+ * 조회할 때마다 새 Member 를 만들어서 돌려준다.
+ *
+ * 맵을 STRIPES 개로 나누고 각각 따로 락을 잡는다. 다른 조각에 있는 회원끼리는 서로 기다리지 않는다.
+ *
+ * 스프링 트랜잭션 안에서 변경하면 바꾼 만큼(차이)을 기록해 두고, 롤백되면 그만큼 되돌린다. (MemberServiceV4 의 롤백 테스트가 그대로 통과한다.)
+ * 이전 값을 통째로 되돌려 쓰지 않으므로 그사이 다른 트랜잭션이 커밋한 변경은 지워지지 않는다.
+ * 격리는 하지 않는다. 커밋 전 변경도 다른 스레드에 바로 보인다.
+ */
+public class InMemoryMemberRepository implements MemberRepository {
+
+    private static final int STRIPES = 64; // 2의 제곱수
+
+    private final StringIntHashMap[] stripes = new StringIntHashMap[STRIPES];
+
+    public InMemoryMemberRepository() {
+        this(1024);
+    }
+
+    public InMemoryMemberRepository(int expectedSize) {
+        Assert.isTrue(expectedSize >= 0, "expectedSize must not be negative");
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new StringIntHashMap(expectedSize / STRIPES);
+        }
+    }
+
+    @Override
+    public Member save(Member member) {
+        String memberId = member.getMemberId();
+        StringIntHashMap stripe = stripe(memberId);
+        synchronized (stripe) {
+            if (!stripe.putIfAbsent(memberId, member.getMoney())) {
+                throw new DuplicateKeyException("duplicate memberId = " + memberId);
+            }
+            written(memberId, Undo.INSERTED, 0);
+        }
+        return member;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        StringIntHashMap stripe = stripe(memberId);
+        synchronized (stripe) {
+            int index = stripe.indexOf(memberId);
+            if (index < 0) {
+                throw new NoSuchElementException("member not found memberId = " + memberId);
+            }
+            return new Member(memberId, stripe.valueAt(index));
+        }
+    }
+
+    // 행 락은 없다. 격리를 하지 않으므로 findById() 와 같다.
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return findById(memberId);
+    }
+
+    // 없는 회원이면 update 문처럼 아무것도 하지 않는다.
+    @Override
+    public void update(String memberId, int money) {
+        StringIntHashMap stripe = stripe(memberId);
+        synchronized (stripe) {
+            int index = stripe.indexOf(memberId);
+            if (index >= 0) {
+                written(memberId, Undo.UPDATED, (long) money - stripe.valueAt(index));
+                stripe.setValueAt(index, money);
+            }
+        }
+    }
+
+    @Override
+    public void delete(String memberId) {
+        StringIntHashMap stripe = stripe(memberId);
+        synchronized (stripe) {
+            int index = stripe.indexOf(memberId);
+            if (index >= 0) {
+                written(memberId, Undo.DELETED, stripe.valueAt(index));
+                stripe.removeAt(index);
+            }
+        }
+    }
+
+    // 조각 하나씩 복사해서 흘려보낸다. 전체를 한 번에 복사하지 않는다. (순서는 정해져 있지 않다.)
+    @Override
+    public Stream<Member> streamAll() {
+        return Arrays.stream(stripes).flatMap(stripe -> snapshot(stripe).stream());
+    }
+
+    // 정렬된 인덱스가 없어서 전체를 훑는다. limit 크기의 힙으로 가장 작은 id 들만 남긴다.
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        Assert.isTrue(limit > 0, "limit must be positive");
+        PriorityQueue<Member> page = new PriorityQueue<>(limit + 1, Comparator.comparing(Member::getMemberId).reversed());
+        for (StringIntHashMap stripe : stripes) {
+            synchronized (stripe) {
+                stripe.forEach((memberId, money) -> {
+                    if (afterMemberId != null && memberId.compareTo(afterMemberId) <= 0) {
+                        return;
+                    }
+                    if (page.size() == limit && memberId.compareTo(page.peek().getMemberId()) > 0) {
+                        return;
+                    }
+                    page.add(new Member(memberId, money));
+                    if (page.size() > limit) {
+                        page.poll();
+                    }
+                });
+            }
+        }
+        List<Member> result = new ArrayList<>(page);
+        result.sort(Comparator.comparing(Member::getMemberId));
+        return result;
+    }
+
+    @Override
+    public boolean adjustBalance(String memberId, int delta) {
+        StringIntHashMap stripe = stripe(memberId);
+        synchronized (stripe) {
+            int index = stripe.indexOf(memberId);
+            if (index < 0) {
+                return false;
+            }
+            int money = stripe.valueAt(index);
+            if ((long) money + delta < 0) {
+                return false;
+            }
+            written(memberId, Undo.UPDATED, delta);
+            stripe.setValueAt(index, money + delta);
+            return true;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (StringIntHashMap stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private StringIntHashMap stripe(String memberId) {
+        int h = memberId.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static List<Member> snapshot(StringIntHashMap stripe) {
+        synchronized (stripe) {
+            List<Member> members = new ArrayList<>(stripe.size());
+            stripe.forEach((memberId, money) -> members.add(new Member(memberId, money)));
+            return members;
+        }
+    }
+
+    // 트랜잭션 안에서 바꾼 내용을 기록한다.
+    // INSERTED - 새로 저장한 회원, UPDATED - value 만큼 바꾼 잔액, DELETED - value 는 지우기 전 잔액
+    @SuppressWarnings("unchecked")
+    private void written(String memberId, int kind, long value) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        List<Undo> undoLog = (List<Undo>) TransactionSynchronizationManager.getResource(this);
+        if (undoLog == null) {
+            List<Undo> newUndoLog = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, newUndoLog);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InMemoryMemberRepository.this);
+                    if (status == STATUS_ROLLED_BACK) {
+                        rollback(newUndoLog);
+                    }
+                }
+            });
+            undoLog = newUndoLog;
+        }
+        undoLog.add(new Undo(memberId, kind, value));
+    }
+
+    // 나중에 바꾼 것부터 거꾸로 되돌린다.
+    private void rollback(List<Undo> undoLog) {
+        for (int i = undoLog.size() - 1; i >= 0; i--) {
+            Undo undo = undoLog.get(i);
+            StringIntHashMap stripe = stripe(undo.memberId);
+            synchronized (stripe) {
+                int index = stripe.indexOf(undo.memberId);
+                switch (undo.kind) {
+                    case Undo.INSERTED:
+                        if (index >= 0) {
+                            stripe.removeAt(index);
+                        }
+                        break;
+                    case Undo.UPDATED:
+                        // 지금 값에서 바꾼 만큼만 뺀다. 그사이 커밋된 다른 변경은 남는다.
+                        if (index >= 0) {
+                            stripe.setValueAt(index, (int) (stripe.valueAt(index) - undo.value));
+                        }
+                        break;
+                    default: // DELETED - 그사이 같은 id 로 새로 저장됐으면 그대로 둔다.
+                        stripe.putIfAbsent(undo.memberId, (int) undo.value);
+                }
+            }
+        }
+    }
+
+    private static class Undo {
+        private static final int INSERTED = 0;
+        private static final int UPDATED = 1;
+        private static final int DELETED = 2;
+
+        private final String memberId;
+        private final int kind;
+        private final long value;
+
+        Undo(String memberId, int kind, long value) {
+            this.memberId = memberId;
+            this.kind = kind;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package hello.jdbc.repository;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.ResourceHolderSupport;
+import org.springframework.transaction.support.SmartTransactionObject;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * DB 없는 트랜잭션 매니저 - InMemoryMemberRepository 를 @Transactional 서비스와 같이 쓸 때
+ * 커넥션을 열지 않고 트랜잭션 동기화만 켠다. 커밋/롤백은 리포지토리가 등록한 동기화(afterCompletion)가 처리한다.
+ * 안쪽 @Transactional(REQUIRED)은 바깥 트랜잭션에 참여한다. 안쪽에서 예외가 나면 트랜잭션 전체를 롤백 전용으로 표시하고,
+ * 바깥에서 그 예외를 잡고 커밋하려고 하면 롤백한 뒤 UnexpectedRollbackException 을 던진다. (DataSourceTransactionManager 와 같다.)
+ * 보류(REQUIRES_NEW)는 지원하지 않는다.
+ *
+ * PlatformTransactionManager transactionManager = new InMemoryTransactionManager();
+ * MemberRepository repository = new InMemoryMemberRepository();
+ */
+public class InMemoryTransactionManager extends AbstractPlatformTransactionManager {
+
+    // 진행 중인 트랜잭션을 찾을 수 있게 이 매니저를 키로 스레드에 묶어 둔다.
+    @Override
+    protected Object doGetTransaction() {
+        InMemoryTransaction transaction = new InMemoryTransaction();
+        transaction.holder = (TransactionHolder) TransactionSynchronizationManager.getResource(this);
+        return transaction;
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+        return ((InMemoryTransaction) transaction).holder != null;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        TransactionHolder holder = new TransactionHolder();
+        holder.setSynchronizedWithTransaction(true);
+        ((InMemoryTransaction) transaction).holder = holder;
+        TransactionSynchronizationManager.bindResource(this, holder);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+    }
+
+    // 참여한 안쪽 트랜잭션이 롤백될 때 - 바깥 트랜잭션이 커밋하지 못하게 표시한다.
+    @Override
+    protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+        ((InMemoryTransaction) status.getTransaction()).holder.setRollbackOnly();
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        TransactionSynchronizationManager.unbindResource(this);
+    }
+
+    private static class TransactionHolder extends ResourceHolderSupport {
+    }
+
+    /**
+     * 트랜잭션 객체 - 같은 트랜잭션에 참여한 쪽은 같은 holder 를 본다.
+     * isRollbackOnly() 로 커밋할 때 안쪽에서 남긴 롤백 전용 표시를 확인한다.
+     */
+    private static class InMemoryTransaction implements SmartTransactionObject {
+
+        private TransactionHolder holder;
+
+        @Override
+        public boolean isRollbackOnly() {
+            return holder.isRollbackOnly();
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 회원 대량 등록 - JDBC 배치
+ * MemberRepositoryV4_2, MemberRepositoryV5 의 saveAll() 이 같이 쓴다.
+ * 배치마다 예외를 변환해서 키 중복은 결과에 담고, 나머지 예외는 그대로 던진다.
+ */
+abstract class MemberBatchInsert {
+
+    static final String SQL = "insert into member(member_id, money) values (?, ?)";
+
+    static SaveAllResult execute(PreparedStatement pstmt, Collection<Member> members, int batchSize,
+                                 SQLExceptionTranslator exTranslator) throws SQLException {
+        SaveAllResult result = new SaveAllResult();
+        List<Member> batch = new ArrayList<>(Math.min(batchSize, members.size()));
+        for (Member member : members) {
+            batch.add(member);
+            if (batch.size() == batchSize) {
+                executeBatch(pstmt, batch, result, exTranslator);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            executeBatch(pstmt, batch, result, exTranslator);
+        }
+        return result;
+    }
+
+    private static void executeBatch(PreparedStatement pstmt, List<Member> batch, SaveAllResult result,
+                                     SQLExceptionTranslator exTranslator) throws SQLException {
+        for (Member member : batch) {
+            bind(pstmt, member);
+            pstmt.addBatch();
+        }
+
+        try {
+            pstmt.executeBatch();
+            result.saved(batch.size());
+        } catch (BatchUpdateException e) {
+            DataAccessException ex = exTranslator.translate("saveAll", SQL, e);
+            if (!(ex instanceof DuplicateKeyException)) {
+                throw ex;
+            }
+            pstmt.clearBatch();
+
+            // EXECUTE_FAILED 만으로는 왜 실패했는지 알 수 없다. (키 중복인지, 값이 너무 긴지)
+            // 실패한 행은 한 건씩 다시 실행해서 행마다 예외를 변환한다. 키 중복이 아니면 그대로 던진다.
+            int[] updateCounts = e.getUpdateCounts();
+            int processed = updateCounts == null ? 0 : Math.min(updateCounts.length, batch.size());
+            for (int i = 0; i < processed; i++) {
+                if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                    executeSingle(pstmt, batch.get(i), result, exTranslator);
+                } else {
+                    result.saved(1);
+                }
+            }
+            // 드라이버가 실패한 행에서 멈췄다면 처리되지 않은 나머지 행은 한 건씩 저장한다.
+            for (Member member : batch.subList(processed, batch.size())) {
+                executeSingle(pstmt, member, result, exTranslator);
+            }
+        }
+    }
+
+    private static void executeSingle(PreparedStatement pstmt, Member member, SaveAllResult result,
+                                      SQLExceptionTranslator exTranslator) {
+        try {
+            bind(pstmt, member);
+            pstmt.executeUpdate();
+            result.saved(1);
+        } catch (SQLException e) {
+            DataAccessException ex = exTranslator.translate("saveAll", SQL, e);
+            if (!(ex instanceof DuplicateKeyException)) {
+                throw ex;
+            }
+            result.duplicate(member.getMemberId());
+        }
+    }
+
+    private static void bind(PreparedStatement pstmt, Member member) throws SQLException {
+        pstmt.setString(1, member.getMemberId());
+        pstmt.setInt(2, member.getMoney());
+    }
+}
@@ -0,0 +1,172 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 회원 ID 발급기 (hi/lo) - DB 시퀀스 테이블에서 ID 를 blockSize 개씩 한 번에 예약하고, 메모리에서 하나씩 나눠 준다.
+ * 임의의 숫자를 붙여서 저장해 보고 키 중복이면 다시 시도하는 방식은 부하가 커질수록 실패한 insert 와 예외가 늘어난다.
+ * 여기서 받은 ID 는 겹치지 않으므로 키 중복 재시도가 없다.
+ *
+ * - id_sequence 테이블에 prefix 마다 행이 하나 있고, next_val 이 아직 아무도 예약하지 않은 첫 번호다.
+ * - 예약은 별도 커넥션의 트랜잭션 하나로 "next_val = next_val + blockSize" update 후 다시 읽는다.
+ *   update 가 행 락을 잡으므로 여러 JVM 이 같은 DB 를 써도 블록이 겹치지 않는다.
+ *   호출한 쪽의 트랜잭션과 따로 커밋하므로, 호출한 쪽이 롤백해도 같은 번호를 다시 주지 않는다. (번호에 빈틈은 생긴다.)
+ * - 블록 안에서는 AtomicLong 증가 한 번으로 나눠 주고, 블록을 다 쓴 스레드 하나만 락을 잡고 다음 블록을 예약한다.
+ *
+ * member_id 는 varchar(10) 이라서 prefix 뒤에 36 진수로 붙인다. ("m" + 36 진수 9 자리면 10^14 개)
+ * 그래서 prefix 는 한 글자까지만 받는다. (id_sequence.name 도 varchar(10) 이다.)
+ *
+ * id_sequence 테이블은 만들지 않는다. src/main/resources/db/schema.sql 로 member 테이블과 같이 만들어 둔다.
+ */
+@Slf4j
+public class MemberIdAllocator {
+
+    static final int ID_COLUMN_LENGTH = 10; // member.member_id, id_sequence.name
+    static final int MAX_DIGITS = 9; // 36 진수 9 자리
+
+    private final DataSource dataSource;
+    private final SQLExceptionTranslator exTranslator;
+    private final String prefix;
+    private final int blockSize;
+
+    private volatile Block current = new Block(0, 0); // 빈 블록 - 처음 호출할 때 예약한다.
+    private final LongAdder reservedBlocks = new LongAdder();
+
+    public MemberIdAllocator(DataSource dataSource, String prefix, int blockSize) {
+        Assert.hasText(prefix, "prefix must not be empty");
+        Assert.isTrue(prefix.length() + MAX_DIGITS <= ID_COLUMN_LENGTH,
+                "prefix must be at most " + (ID_COLUMN_LENGTH - MAX_DIGITS) + " characters");
+        Assert.isTrue(blockSize > 0, "blockSize must be positive");
+        this.dataSource = dataSource;
+        this.exTranslator = ExceptionTranslatorRegistry.shared().translator(dataSource);
+        this.prefix = prefix;
+        this.blockSize = blockSize;
+    }
+
+    public long nextId() {
+        while (true) {
+            Block block = current;
+            long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                return id;
+            }
+            refill(block);
+        }
+    }
+
+    public String nextMemberId() {
+        return prefix + Long.toString(nextId(), 36);
+    }
+
+    // DB 에서 예약한 블록 수 (처음 예약 포함)
+    public long getReservedBlockCount() {
+        return reservedBlocks.sum();
+    }
+
+    // 다른 스레드가 이미 새 블록으로 바꿨으면 그대로 둔다.
+    private synchronized void refill(Block exhausted) {
+        if (current == exhausted) {
+            current = reserve();
+        }
+    }
+
+    private Block reserve() {
+        String sql = "update id_sequence set next_val = next_val + ? where name = ?";
+
+        Connection con = null;
+        try {
+            con = dataSource.getConnection(); // 호출한 쪽 트랜잭션과 상관없이 따로 커밋한다.
+            con.setAutoCommit(false);
+            while (true) {
+                try (PreparedStatement pstmt = con.prepareStatement(sql)) {
+                    pstmt.setInt(1, blockSize);
+                    pstmt.setString(2, prefix);
+                    if (pstmt.executeUpdate() == 1) {
+                        long end = selectNextValue(con);
+                        con.commit();
+                        reservedBlocks.increment();
+                        log.debug("reserved id block prefix = {}, [{}, {})", prefix, end - blockSize, end);
+                        return new Block(end - blockSize, end);
+                    }
+                }
+                insertSequence(con); // 처음 쓰는 prefix
+            }
+        } catch (SQLException e) {
+            rollback(con);
+            throw exTranslator.translate("reserve", sql, e);
+        } finally {
+            release(con);
+        }
+    }
+
+    private long selectNextValue(Connection con) throws SQLException {
+        try (PreparedStatement pstmt = con.prepareStatement("select next_val from id_sequence where name = ?")) {
+            pstmt.setString(1, prefix);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    // 다른 JVM 이 같은 prefix 행을 먼저 만들었으면 키 중복이 난다. 롤백하고 update 를 다시 하면 된다.
+    private void insertSequence(Connection con) throws SQLException {
+        String sql = "insert into id_sequence(name, next_val) values (?, 1)";
+        try (PreparedStatement pstmt = con.prepareStatement(sql)) {
+            pstmt.setString(1, prefix);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            if (!(exTranslator.translate("insertSequence", sql, e) instanceof DuplicateKeyException)) {
+                throw e;
+            }
+            con.rollback();
+        }
+    }
+
+    private void rollback(Connection con) {
+        if (con == null) {
+            return;
+        }
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            log.info("rollback failed", e);
+        }
+    }
+
+    // 풀에 돌려주기 전에 autocommit 을 되돌린다.
+    private void release(Connection con) {
+        if (con == null) {
+            return;
+        }
+        try {
+            con.setAutoCommit(true);
+        } catch (SQLException e) {
+            log.info("reset autocommit failed", e);
+        }
+        JdbcUtils.closeConnection(con);
+    }
+
+    // [start, end) 범위의 ID
+    private static class Block {
+        private final long end;
+        private final AtomicLong next;
+
+        Block(long start, long end) {
+            this.end = end;
+            this.next = new AtomicLong(start);
+        }
+    }
+}
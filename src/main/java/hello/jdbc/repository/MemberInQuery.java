@@ -0,0 +1,56 @@
+package hello.jdbc.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * 여러 회원 조회 - IN 절 쿼리
+ * 조회할 id 개수마다 다른 sql을 만들면 DB가 매번 실행 계획을 새로 만든다.
+ * 그래서 placeholder 개수를 1/8/32/128 네 가지 모양으로만 만들고, 남는 자리는 마지막 id로 채운다.
+ */
+abstract class MemberInQuery {
+
+    private static final int[] SHAPES = {1, 8, 32, 128};
+    private static final String[] SQLS = new String[SHAPES.length];
+
+    static {
+        for (int i = 0; i < SHAPES.length; i++) {
+            StringBuilder sb = new StringBuilder("select * from member where member_id in (?");
+            for (int j = 1; j < SHAPES[i]; j++) {
+                sb.append(", ?");
+            }
+            SQLS[i] = sb.append(")").toString();
+        }
+    }
+
+    // 중복을 제거한 id를 최대 128개씩 나누고, 각 묶음을 가장 가까운 모양의 크기로 채운다.
+    static List<String[]> chunks(Collection<String> memberIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(memberIds));
+        List<String[]> chunks = new ArrayList<>();
+        int max = SHAPES[SHAPES.length - 1];
+        for (int from = 0; from < ids.size(); from += max) {
+            List<String> part = ids.subList(from, Math.min(from + max, ids.size()));
+            String[] chunk = Arrays.copyOf(part.toArray(new String[0]), shapeOf(part.size()));
+            Arrays.fill(chunk, part.size(), chunk.length, part.get(part.size() - 1));
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    // chunks()가 만든 묶음 크기에 맞는 sql
+    static String sql(int size) {
+        return SQLS[Arrays.binarySearch(SHAPES, size)];
+    }
+
+    private static int shapeOf(int size) {
+        for (int shape : SHAPES) {
+            if (size <= shape) {
+                return shape;
+            }
+        }
+        throw new IllegalArgumentException("too many ids: " + size);
+    }
+}
@@ -0,0 +1,59 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 회원 페이지 순회
+ * findPage()로 member_id 순서대로 한 페이지씩 가져온다. 다음 페이지는 이전 페이지의 마지막 id 다음부터 조회한다.
+ * offset 을 쓰지 않기 때문에 몇 번째 페이지든 조회 비용이 같다.
+ *
+ * for (MemberPageIterator pages = new MemberPageIterator(memberRepository, 100); pages.hasNext(); ) {
+ *     List<Member> page = pages.next();
+ * }
+ */
+public class MemberPageIterator implements Iterator<List<Member>> {
+
+    private final MemberRepository memberRepository;
+    private final int pageSize;
+
+    private String lastMemberId; // 이전 페이지의 마지막 id, 첫 페이지는 null
+    private List<Member> nextPage;
+    private boolean finished;
+
+    public MemberPageIterator(MemberRepository memberRepository, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.memberRepository = memberRepository;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPage == null && !finished) {
+            List<Member> page = memberRepository.findPage(lastMemberId, pageSize);
+            if (page.isEmpty()) {
+                finished = true;
+            } else {
+                nextPage = page;
+                lastMemberId = page.get(page.size() - 1).getMemberId();
+                finished = page.size() < pageSize; // 덜 찼으면 마지막 페이지다.
+            }
+        }
+        return nextPage != null;
+    }
+
+    @Override
+    public List<Member> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<Member> page = nextPage;
+        nextPage = null;
+        return page;
+    }
+}
@@ -1,6 +1,17 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 // 스프링과 문제 해결 (예외 처리, 반복) - 런타임 예외 적용
 public interface MemberRepository {
@@ -8,7 +19,90 @@ public interface MemberRepository {
 
     Member findById(String memberId);
 
+    /**
+     * 회원을 조회하면서 행에 쓰기 락을 건다. (select ... for update)
+     * 트랜잭션이 끝날 때까지 다른 트랜잭션은 이 행을 변경하거나 for update 로 조회할 수 없고 기다린다.
+     * 트랜잭션 밖에서 호출하면 조회가 끝나자마자 락이 풀리므로 의미가 없다.
+     */
+    Member findByIdForUpdate(String memberId);
+
     void update(String memberId, int money);
 
     void delete(String memberId);
+
+    /**
+     * 여러 회원을 한번에 저장한다.
+     * 기본 구현은 save()를 한 건씩 호출한다. JDBC 배치를 쓸 수 있는 구현체는 재정의한다.
+     * 키 중복으로 저장하지 못한 회원은 예외를 던지지 않고 결과에 담아서 돌려준다.
+     */
+    default SaveAllResult saveAll(Collection<Member> members) {
+        SaveAllResult result = new SaveAllResult();
+        for (Member member : members) {
+            try {
+                save(member);
+                result.saved(1);
+            } catch (DuplicateKeyException e) {
+                result.duplicate(member.getMemberId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 여러 회원을 한번에 조회한다. 없는 회원은 결과 Map에 담기지 않는다.
+     * 기본 구현은 findById()를 한 건씩 호출한다. IN 절로 묶어서 조회할 수 있는 구현체는 재정의한다.
+     */
+    default Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        Map<String, Member> result = new HashMap<>();
+        for (String memberId : memberIds) {
+            try {
+                result.put(memberId, findById(memberId));
+            } catch (NoSuchElementException | EmptyResultDataAccessException e) {
+                // 없는 회원은 건너뛴다.
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 회원 테이블 전체를 커서로 읽는 스트림
+     * 한 번에 메모리에 올리지 않고 소비하는 만큼만 읽는다.
+     * 커넥션을 잡고 있으므로 반드시 try-with-resources 로 닫아야 한다.
+     */
+    Stream<Member> streamAll();
+
+    default Stream<Member> streamAll(Predicate<? super Member> filter) {
+        return streamAll().filter(filter);
+    }
+
+    /**
+     * member_id 순서로 afterMemberId 다음부터 limit 건을 조회한다. (첫 페이지는 afterMemberId 에 null)
+     * offset 대신 마지막으로 본 id 를 기준으로 조회하기 때문에 뒤쪽 페이지도 비용이 같다.
+     * 페이지를 차례로 읽을 때는 MemberPageIterator 를 쓴다.
+     */
+    List<Member> findPage(String afterMemberId, int limit);
+
+    /**
+     * 잔액을 delta 만큼 더한다. (빼려면 음수)
+     * update member set money = money + ?, version = version + 1 where member_id = ? and money + ? >= 0
+     * 조회 없이 DB 에서 바로 계산하므로 읽고 쓰는 사이에 다른 트랜잭션의 변경을 덮어쓰지 않는다.
+     * 회원이 없거나 잔액이 모자라면 변경된 행이 없으므로 false 를 반환한다.
+     * delta 의 부호가 곧 방향이므로 이체 금액이 양수인지는 부르는 쪽(서비스)이 먼저 확인한다.
+     */
+    boolean adjustBalance(String memberId, int delta);
+
+    /**
+     * 여러 회원의 잔액을 한번에 바꾼다. (키: member_id, 값: delta)
+     * 기본 구현은 adjustBalance()를 한 건씩 호출한다. JDBC 배치를 쓸 수 있는 구현체는 재정의한다.
+     * 회원이 없거나 잔액이 모자라서 바꾸지 못한 회원 id 를 돌려준다.
+     */
+    default List<String> adjustBalances(Map<String, Integer> deltas) {
+        List<String> failedIds = new ArrayList<>();
+        deltas.forEach((memberId, delta) -> {
+            if (!adjustBalance(memberId, delta)) {
+                failedIds.add(memberId);
+            }
+        });
+        return failedIds;
+    }
 }
@@ -1,6 +1,7 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.connection.DBConnectionUtil;
+import hello.jdbc.connection.SqlTracer;
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.session.NonUniqueSessionRepositoryException;
@@ -15,6 +16,8 @@ import java.util.NoSuchElementException;
 @Slf4j
 public class MemberRepositoryV0 {
 
+    private final SqlTracer sqlTracer = SqlTracer.shared();
+
     // 회원 저장
     public Member save(Member member) throws SQLException {
         // sql 작성
@@ -29,7 +32,8 @@ public class MemberRepositoryV0 {
             pstmt = con.prepareStatement(sql);
             pstmt.setString(1, member.getMemberId()); // values 뒤에 ?인 파라미터 바인딩하기
             pstmt.setInt(2, member.getMoney());
-            pstmt.executeUpdate(); // 실행 - 쿼리가 실제 데이터베이스에 실행이 된다, Statement 를 통해 준비된 SQL을 커넥션을 통해 실제 데이터베이스에 전달
+            int resultSize = pstmt.executeUpdate(); // 실행 - 쿼리가 실제 데이터베이스에 실행이 된다, Statement 를 통해 준비된 SQL을 커넥션을 통해 실제 데이터베이스에 전달
+            sqlTracer.executed(sql, 2, resultSize);
             // executeUpdate()는 데이터 변경할 때 사용
             return member;
         } catch (SQLException e) {
@@ -60,6 +64,7 @@ public class MemberRepositoryV0 {
             // 실행
             // rs - select 쿼리의 결과를 담고 있는 통이다.
             rs = pstmt.executeQuery();// select 시 사용
+            sqlTracer.executed(sql, 1, -1);
             // 데이터 꺼내기
             if (rs.next()) { // rs.next() - 실제 데이터가 있는 곳에서 시작한다, 한번은 호출해야 한다. 데이터가 있으면 true
                 Member member = new Member();
@@ -80,7 +85,7 @@ public class MemberRepositoryV0 {
     // JDBC 개발 - 수정, 삭제
     // 회원 변경
     public void update(String memberId, int money) throws SQLException {
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -91,7 +96,7 @@ public class MemberRepositoryV0 {
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
             int resultSize = pstmt.executeUpdate(); // 쿼리를 실행하고 영향받은 row수를 반환
-            log.info("resultSize = {}", resultSize);
+            sqlTracer.executed(sql, 2, resultSize);
         } catch (SQLException e) {
             log.error("db error", e);
             throw e;
@@ -113,7 +118,8 @@ public class MemberRepositoryV0 {
             pstmt = con.prepareStatement(sql);
             pstmt.setString(1, memberId);
 
-            pstmt.executeUpdate();
+            int resultSize = pstmt.executeUpdate();
+            sqlTracer.executed(sql, 1, resultSize);
         } catch (SQLException e) {
             log.error("db error", e);
             throw e;
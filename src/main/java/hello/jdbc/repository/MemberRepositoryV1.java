@@ -1,6 +1,7 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.connection.DBConnectionUtil;
+import hello.jdbc.connection.SqlTracer;
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.support.JdbcUtils;
@@ -19,6 +20,7 @@ public class MemberRepositoryV1 {
     // 먼저 DataSource 사용하려면 의존관계 주입을 받아야 한다.
     // DataSource(커넥션을 획득하는 방법을 추상화하는 인터페이스) - 애플리케이션 코드를 변경할 필요없다.
     private final DataSource dataSource;
+    private final SqlTracer sqlTracer = SqlTracer.shared();
 
     public MemberRepositoryV1(DataSource dataSource) {
         this.dataSource = dataSource;
@@ -38,7 +40,8 @@ public class MemberRepositoryV1 {
             pstmt = con.prepareStatement(sql);
             pstmt.setString(1, member.getMemberId()); // values 뒤에 ?인 파라미터 바인딩하기
             pstmt.setInt(2, member.getMoney());
-            pstmt.executeUpdate(); // 실행 - 쿼리가 실제 데이터베이스에 실행이 된다, Statement 를 통해 준비된 SQL을 커넥션을 통해 실제 데이터베이스에 전달
+            int resultSize = pstmt.executeUpdate(); // 실행 - 쿼리가 실제 데이터베이스에 실행이 된다, Statement 를 통해 준비된 SQL을 커넥션을 통해 실제 데이터베이스에 전달
+            sqlTracer.executed(sql, 2, resultSize);
             // executeUpdate()는 데이터 변경할 때 사용
             return member;
         } catch (SQLException e) {
@@ -68,6 +71,7 @@ public class MemberRepositoryV1 {
             // 실행
             // rs - select 쿼리의 결과를 담고 있는 통이다.
             rs = pstmt.executeQuery();// select 시 사용
+            sqlTracer.executed(sql, 1, -1);
             // 데이터 꺼내기
             if (rs.next()) { // rs.next() - 실제 데이터가 있는 곳에서 시작한다, 한번은 호출해야 한다. 데이터가 있으면 true
                 Member member = new Member();
@@ -87,7 +91,7 @@ public class MemberRepositoryV1 {
 
     // 회원 변경
     public void update(String memberId, int money) throws SQLException {
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -98,7 +102,7 @@ public class MemberRepositoryV1 {
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
             int resultSize = pstmt.executeUpdate(); // 쿼리를 실행하고 영향받은 row수를 반환
-            log.info("resultSize = {}", resultSize);
+            sqlTracer.executed(sql, 2, resultSize);
         } catch (SQLException e) {
             log.error("db error", e);
             throw e;
@@ -119,7 +123,8 @@ public class MemberRepositoryV1 {
             pstmt = con.prepareStatement(sql);
             pstmt.setString(1, memberId);
 
-            pstmt.executeUpdate();
+            int resultSize = pstmt.executeUpdate();
+            sqlTracer.executed(sql, 1, resultSize);
         } catch (SQLException e) {
             log.error("db error", e);
             throw e;
@@ -145,8 +150,9 @@ public class MemberRepositoryV1 {
 
     // dataSource에서 Connection 가져오기
     private Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
         Connection con = dataSource.getConnection();
-        log.info("get connection = {}, class = {}", con, con.getClass());
+        sqlTracer.acquired(start); // 매번 INFO 로그를 남기는 대신 SQL 추적에 커넥션 얻는 시간을 남긴다.
         return con;
     }
 }
@@ -1,34 +1,55 @@
 package hello.jdbc.repository;
 
+import hello.jdbc.connection.SqlTracer;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.ex.MyDbException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
-import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
 import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.util.Assert;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.stream.Stream;
 
 /**
  * 스프링과 문제 해결 (예외 처리, 반복) - 스프링 예외 추상화 적용
  * SQLExceptionTranslator 추가
  */
 @Slf4j
-public class MemberRepositoryV4_2 implements MemberRepository {
+public class MemberRepositoryV4_2 implements MemberRepository, VersionedMemberRepository {
 
     // 먼저 DataSource 사용하려면 의존관계 주입을 받아야 한다.
     // DataSource(커넥션을 획득하는 방법을 추상화하는 인터페이스) - 애플리케이션 코드를 변경할 필요없다.
     private final DataSource dataSource;
+    private final SqlTracer sqlTracer = SqlTracer.shared();
     private final SQLExceptionTranslator exTranslator;
+    private int batchSize = 1000; // saveAll() 에서 한번에 executeBatch() 할 건수
+    private int fetchSize = 100; // streamAll() 커서가 한번에 가져올 행 수
 
     public MemberRepositoryV4_2(DataSource dataSource) {
         this.dataSource = dataSource;
         // 에러코드를 기반으로 스프링이 잡은 예외계층으로 변환해서 넣어주겠다.
-        this.exTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
         // dataSource 넣어주는 이유 - 어떤 DB를 쓰는지 알아서 찾아서 쓴다.
+        // 레지스트리가 지금 DB 종류를 알아내 두고, 같은 DataSource 를 쓰는 리포지토리들과 변환기를 같이 쓴다.
+        this.exTranslator = ExceptionTranslatorRegistry.shared().translator(dataSource);
+    }
+
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        Assert.isTrue(fetchSize > 0, "fetchSize must be positive");
+        this.fetchSize = fetchSize;
     }
 
     // 회원 저장
@@ -46,7 +67,8 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             pstmt = con.prepareStatement(sql);
             pstmt.setString(1, member.getMemberId()); // values 뒤에 ?인 파라미터 바인딩하기
             pstmt.setInt(2, member.getMoney());
-            pstmt.executeUpdate(); // 실행 - 쿼리가 실제 데이터베이스에 실행이 된다, Statement 를 통해 준비된 SQL을 커넥션을 통해 실제 데이터베이스에 전달
+            int resultSize = pstmt.executeUpdate(); // 실행 - 쿼리가 실제 데이터베이스에 실행이 된다, Statement 를 통해 준비된 SQL을 커넥션을 통해 실제 데이터베이스에 전달
+            sqlTracer.executed(sql, 2, resultSize);
             // executeUpdate()는 데이터 변경할 때 사용
             return member;
         } catch (SQLException e) {
@@ -77,6 +99,7 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             // 실행
             // rs - select 쿼리의 결과를 담고 있는 통이다.
             rs = pstmt.executeQuery();// select 시 사용
+            sqlTracer.executed(sql, 1, -1);
             // 데이터 꺼내기
             if (rs.next()) { // rs.next() - 실제 데이터가 있는 곳에서 시작한다, 한번은 호출해야 한다. 데이터가 있으면 true
                 Member member = new Member();
@@ -94,10 +117,41 @@ public class MemberRepositoryV4_2 implements MemberRepository {
         }
     }
 
+    // 회원 조회 + 행 락 - 트랜잭션이 끝날 때까지 다른 트랜잭션이 이 회원을 바꾸지 못한다.
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        String sql = "select * from member where member_id = ? for update";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+            sqlTracer.executed(sql, 1, -1);
+            if (rs.next()) {
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                return member;
+            } else {
+                throw new NoSuchElementException("member not found memberId = " + memberId);
+            }
+        } catch (SQLException e) {
+            throw exTranslator.translate("findByIdForUpdate", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
     // 회원 변경
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -108,7 +162,7 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
             int resultSize = pstmt.executeUpdate(); // 쿼리를 실행하고 영향받은 row수를 반환
-            log.info("resultSize = {}", resultSize);
+            sqlTracer.executed(sql, 2, resultSize);
         } catch (SQLException e) {
             throw exTranslator.translate("update", sql, e);
         } finally {
@@ -116,6 +170,58 @@ public class MemberRepositoryV4_2 implements MemberRepository {
         }
     }
 
+    // 회원 조회 - 낙관적 락 version 포함
+    @Override
+    public Member findByIdWithVersion(String memberId) {
+        String sql = "select member_id, money, version from member where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+            sqlTracer.executed(sql, 1, -1);
+            if (rs.next()) {
+                return new Member(rs.getString("member_id"), rs.getInt("money"), rs.getLong("version"));
+            } else {
+                throw new NoSuchElementException("member not found memberId = " + memberId);
+            }
+        } catch (SQLException e) {
+            throw exTranslator.translate("findByIdWithVersion", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    // 회원 변경 - 읽은 뒤로 version 이 그대로일 때만 바꾸고 version 을 올린다.
+    @Override
+    public boolean update(String memberId, int money, long version) {
+        String sql = "update member set money=?, version=version+1 where member_id=? and version=?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setInt(1, money);
+            pstmt.setString(2, memberId);
+            pstmt.setLong(3, version);
+            int resultSize = pstmt.executeUpdate();
+            sqlTracer.executed(sql, 3, resultSize);
+            return resultSize == 1;
+        } catch (SQLException e) {
+            throw exTranslator.translate("updateWithVersion", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
     // 회원 삭제
     @Override
     public void delete(String memberId) {
@@ -129,7 +235,8 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             pstmt = con.prepareStatement(sql);
             pstmt.setString(1, memberId);
 
-            pstmt.executeUpdate();
+            int resultSize = pstmt.executeUpdate();
+            sqlTracer.executed(sql, 1, resultSize);
         } catch (SQLException e) {
             throw exTranslator.translate("delete", sql, e);
         } finally {
@@ -137,6 +244,157 @@ public class MemberRepositoryV4_2 implements MemberRepository {
         }
     }
 
+    // 회원 대량 저장 - 커넥션 하나로 batchSize 만큼 모아서 addBatch()/executeBatch() 한다.
+    @Override
+    public SaveAllResult saveAll(Collection<Member> members) {
+        String sql = MemberBatchInsert.SQL;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            return MemberBatchInsert.execute(pstmt, members, batchSize, exTranslator);
+        } catch (SQLException e) {
+            throw exTranslator.translate("saveAll", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    // 여러 회원 조회 - 커넥션 하나로 IN 절 쿼리를 묶음 개수만큼 실행한다.
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        Map<String, Member> result = new HashMap<>();
+        if (memberIds.isEmpty()) {
+            return result;
+        }
+
+        String sql = null;
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            for (String[] chunk : MemberInQuery.chunks(memberIds)) {
+                sql = MemberInQuery.sql(chunk.length);
+                pstmt = con.prepareStatement(sql);
+                for (int i = 0; i < chunk.length; i++) {
+                    pstmt.setString(i + 1, chunk[i]);
+                }
+                rs = pstmt.executeQuery();
+                sqlTracer.executed(sql, chunk.length, -1); // 첫 묶음에 커넥션 얻는 시간이 들어간다.
+                while (rs.next()) {
+                    Member member = new Member();
+                    member.setMemberId(rs.getString("member_id"));
+                    member.setMoney(rs.getInt("money"));
+                    result.put(member.getMemberId(), member);
+                }
+                // 다음 묶음을 위해 이번 묶음의 자원은 바로 닫는다.
+                JdbcUtils.closeResultSet(rs);
+                JdbcUtils.closeStatement(pstmt);
+                rs = null;
+                pstmt = null;
+            }
+            return result;
+        } catch (SQLException e) {
+            throw exTranslator.translate("findAllByIds", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    // 회원 전체 조회 - 앞으로만 읽는 읽기 전용 커서를 열고, 스트림을 닫을 때 자원을 정리한다.
+    @Override
+    public Stream<Member> streamAll() {
+        String sql = "select * from member";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize); // 한 번에 가져올 행 수 - 이 만큼만 메모리에 올라온다.
+            rs = pstmt.executeQuery();
+            sqlTracer.executed(sql, 0, -1);
+
+            Connection streamCon = con;
+            PreparedStatement streamPstmt = pstmt;
+            ResultSet streamRs = rs;
+            return MemberStreams.of(rs, e -> exTranslator.translate("streamAll", sql, e))
+                    .onClose(() -> close(streamCon, streamPstmt, streamRs));
+        } catch (SQLException e) {
+            close(con, pstmt, rs);
+            throw exTranslator.translate("streamAll", sql, e);
+        }
+    }
+
+    // 페이지 조회 - where member_id > ? order by member_id limit ?
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        Assert.isTrue(limit > 0, "limit must be positive");
+        String sql = afterMemberId == null
+                ? "select * from member order by member_id limit ?"
+                : "select * from member where member_id > ? order by member_id limit ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            int index = 1;
+            if (afterMemberId != null) {
+                pstmt.setString(index++, afterMemberId);
+            }
+            pstmt.setInt(index, limit);
+
+            rs = pstmt.executeQuery();
+            sqlTracer.executed(sql, index, -1);
+            List<Member> members = new ArrayList<>(limit);
+            while (rs.next()) {
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                members.add(member);
+            }
+            return members;
+        } catch (SQLException e) {
+            throw exTranslator.translate("findPage", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    // 잔액 상대 변경 - 변경된 행이 없으면 회원이 없거나 잔액이 모자란 것이다.
+    @Override
+    public boolean adjustBalance(String memberId, int delta) {
+        String sql = "update member set money = money + ?, version = version + 1 where member_id = ? and money + ? >= 0";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setInt(1, delta);
+            pstmt.setString(2, memberId);
+            pstmt.setInt(3, delta);
+            int resultSize = pstmt.executeUpdate();
+            sqlTracer.executed(sql, 3, resultSize);
+            return resultSize == 1;
+        } catch (SQLException e) {
+            throw exTranslator.translate("adjustBalance", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
     // Connection 닫아주기 - 사용한 자원들을 다 닫아줘야 한다.
     private void close(Connection con, Statement stmt, ResultSet rs) {
         // Statement는 sql을 그대로 넣는거다. PreparedStatement는 파라미터를 바인딩 할 수 있다.(PreparedStatement는 Statement를 상속받았다.)
@@ -157,8 +415,9 @@ public class MemberRepositoryV4_2 implements MemberRepository {
     // dataSource에서 Connection 가져오기
     private Connection getConnection() throws SQLException {
         // 주의! 트랜잭션 동기화를 사용하려면 DataSourceUtils를 사용해야 한다.
+        long start = System.nanoTime();
         Connection con = DataSourceUtils.getConnection(dataSource);
-        log.info("get connection = {}, class = {}", con, con.getClass());
+        sqlTracer.acquired(start); // 매번 INFO 로그를 남기는 대신 SQL 추적에 커넥션 얻는 시간을 남긴다.
         return con;
     }
 }
@@ -2,24 +2,48 @@ package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.Assert;
 
 import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * 스프링과 문제 해결 (예외 처리, 반복) - JDBC 반복 문제 해결/JdbcTemplate (템플릿 콜백 패턴)
  * JdbcTemplate 사용
  */
 @Slf4j
-public class MemberRepositoryV5 implements MemberRepository {
+public class MemberRepositoryV5 implements MemberRepository, VersionedMemberRepository {
 
     private final JdbcTemplate template;
+    private int batchSize = 1000; // saveAll() 에서 한번에 executeBatch() 할 건수
+    private int fetchSize = 100; // streamAll() 커서가 한번에 가져올 행 수
 
     public MemberRepositoryV5(DataSource dataSource) {
         this.template = new JdbcTemplate(dataSource);
     }
 
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        Assert.isTrue(fetchSize > 0, "fetchSize must be positive");
+        this.fetchSize = fetchSize;
+    }
+
     // 회원 저장
     @Override // 인터페이스 사용시 @Override 사용하는 게 좋다. 컴파일러가 구현된 게 안 맞으면 오류를 내준다.
     public Member save(Member member) {
@@ -37,6 +61,13 @@ public class MemberRepositoryV5 implements MemberRepository {
         // memberRowMapper() - 쿼리 결과를 어떻게 멤버로 만들건지 매핑정보 넣어줘야 한다.
     }
 
+    // 회원 조회 + 행 락 - 트랜잭션이 끝날 때까지 다른 트랜잭션이 이 회원을 바꾸지 못한다.
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        String sql = "select * from member where member_id = ? for update";
+        return template.queryForObject(sql, memberRowMapper(), memberId);
+    }
+
     // 쿼리 결과를 어떻게 멤버로 만들건지 매핑정보 넣어줘야 한다.
     private RowMapper<Member> memberRowMapper() {
         // 람다 문법, rs(resultSet)/rowNum(몇번째로 들어오는지)
@@ -51,10 +82,25 @@ public class MemberRepositoryV5 implements MemberRepository {
     // 회원 변경
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
         template.update(sql, money, memberId);
     }
 
+    // 회원 조회 - 낙관적 락 version 포함
+    @Override
+    public Member findByIdWithVersion(String memberId) {
+        String sql = "select member_id, money, version from member where member_id = ?";
+        return template.queryForObject(sql, (rs, rowNum) ->
+                new Member(rs.getString("member_id"), rs.getInt("money"), rs.getLong("version")), memberId);
+    }
+
+    // 회원 변경 - 읽은 뒤로 version 이 그대로일 때만 바꾸고 version 을 올린다.
+    @Override
+    public boolean update(String memberId, int money, long version) {
+        String sql = "update member set money=?, version=version+1 where member_id=? and version=?";
+        return template.update(sql, money, memberId, version) == 1;
+    }
+
     // 회원 삭제
     @Override
     public void delete(String memberId) {
@@ -62,5 +108,85 @@ public class MemberRepositoryV5 implements MemberRepository {
         template.update(sql, memberId);
     }
 
+    // 회원 대량 저장 - 커넥션 하나로 batchSize 만큼 모아서 executeBatch() 한다.
+    // batchUpdate()는 예외 변환 과정에서 BatchUpdateException(행별 결과)을 잃어버리기 때문에
+    // PreparedStatementCallback 안에서 직접 배치를 실행하고 예외 변환기는 JdbcTemplate 것을 쓴다.
+    @Override
+    public SaveAllResult saveAll(Collection<Member> members) {
+        return template.execute(MemberBatchInsert.SQL, (PreparedStatementCallback<SaveAllResult>) ps ->
+                MemberBatchInsert.execute(ps, members, batchSize, template.getExceptionTranslator()));
+    }
+
+    // 여러 회원 조회 - IN 절 쿼리를 묶음 개수만큼 실행한다.
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        Map<String, Member> result = new HashMap<>();
+        for (String[] chunk : MemberInQuery.chunks(memberIds)) {
+            for (Member member : template.query(MemberInQuery.sql(chunk.length), memberRowMapper(), (Object[]) chunk)) {
+                result.put(member.getMemberId(), member);
+            }
+        }
+        return result;
+    }
+
+    // 회원 전체 조회 - queryForStream()은 스트림을 닫을 때 ResultSet/Statement를 닫고 커넥션을 반납한다.
+    @Override
+    public Stream<Member> streamAll() {
+        String sql = "select * from member";
+        return template.queryForStream(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize); // 한 번에 가져올 행 수 - 이 만큼만 메모리에 올라온다.
+            return ps;
+        }, memberRowMapper());
+    }
+
+    // 페이지 조회 - where member_id > ? order by member_id limit ?
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        Assert.isTrue(limit > 0, "limit must be positive");
+        if (afterMemberId == null) {
+            String sql = "select * from member order by member_id limit ?";
+            return template.query(sql, memberRowMapper(), limit);
+        }
+        String sql = "select * from member where member_id > ? order by member_id limit ?";
+        return template.query(sql, memberRowMapper(), afterMemberId, limit);
+    }
+
+    // 잔액 상대 변경 - 변경된 행이 없으면 회원이 없거나 잔액이 모자란 것이다.
+    @Override
+    public boolean adjustBalance(String memberId, int delta) {
+        String sql = "update member set money = money + ?, version = version + 1 where member_id = ? and money + ? >= 0";
+        return template.update(sql, delta, memberId, delta) == 1;
+    }
+
+    // 잔액 대량 상대 변경 - update 한 문장을 JDBC 배치로 한번에 보낸다.
+    @Override
+    public List<String> adjustBalances(Map<String, Integer> deltas) {
+        String sql = "update member set money = money + ?, version = version + 1 where member_id = ? and money + ? >= 0";
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(deltas.entrySet());
+        int[] counts = template.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<String, Integer> entry = entries.get(i);
+                ps.setInt(1, entry.getValue());
+                ps.setString(2, entry.getKey());
+                ps.setInt(3, entry.getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+
+        List<String> failedIds = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) { // SUCCESS_NO_INFO(-2) 는 성공으로 본다.
+                failedIds.add(entries.get(i).getKey());
+            }
+        }
+        return failedIds;
+    }
+
     // 커넥션 닫기 및 동기화 하기 안해도 된다.
 }
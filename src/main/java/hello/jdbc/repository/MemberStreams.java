@@ -0,0 +1,42 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 커서 기반 회원 조회
+ * ResultSet 을 한 번에 다 읽지 않고, 스트림이 요소를 요청할 때마다 한 행씩 읽어서 Member 로 바꾼다.
+ * 스트림을 닫을 때 ResultSet/Statement/커넥션을 닫아야 하므로 호출하는 쪽에서 onClose()로 정리 작업을 등록한다.
+ */
+abstract class MemberStreams {
+
+    static Stream<Member> of(ResultSet rs, Function<SQLException, RuntimeException> exTranslator) {
+        Spliterator<Member> spliterator = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Member> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    Member member = new Member();
+                    member.setMemberId(rs.getString("member_id"));
+                    member.setMoney(rs.getInt("money"));
+                    action.accept(member);
+                    return true;
+                } catch (SQLException e) {
+                    throw exTranslator.apply(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+}
@@ -0,0 +1,179 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.repository.ex.StackTracePolicy;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.CannotSerializeTransactionException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PermissionDeniedDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.InvalidResultSetAccessException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLErrorCodes;
+import org.springframework.jdbc.support.SQLExceptionSubclassTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 에러 코드를 미리 풀어 둔 예외 변환기 - ExceptionTranslatorRegistry 가 DB 종류마다 하나씩 만든다.
+ * SQLErrorCodeSQLExceptionTranslator 와 같은 sql-error-codes.xml 을 쓰고 결과 예외도 같다.
+ *
+ * SQLErrorCodeSQLExceptionTranslator 는 예외가 날 때마다 에러 코드를 문자열로 바꿔서 코드 목록 10 개를 차례로 찾는다.
+ * 여기서는 만들 때 코드 목록을 int 로 바꿔서 "에러 코드 -> 분류" 배열을 만들어 두고, 변환할 때는 배열 한 번만 읽는다.
+ * 배열에 못 넣는 코드(음수이거나 너무 큰 코드)는 정렬된 int 배열에서 이진 탐색한다.
+ *
+ * 표에 없는 코드는 SQLErrorCodeSQLExceptionTranslator 처럼 SQLException 하위 타입과 SQLState 로 변환한다.
+ * PostgreSQL 처럼 에러 코드 대신 SQLState 로 변환하는 DB 는 미리 풀어 둔 SQLErrorCodes 로 스프링 변환기를 그대로 쓴다.
+ */
+class PreResolvedExceptionTranslator implements SQLExceptionTranslator {
+
+    private static final int MAX_TABLE_SIZE = 1 << 17; // byte 배열 128KB 까지만 직접 인덱싱한다. (H2 코드는 90000 번대까지)
+
+    // SQLErrorCodeSQLExceptionTranslator 가 찾는 순서 - 한 코드가 여러 목록에 있으면 앞의 분류가 이긴다.
+    enum Category {
+        BAD_SQL_GRAMMAR, INVALID_RESULT_SET_ACCESS, DUPLICATE_KEY, DATA_INTEGRITY_VIOLATION, PERMISSION_DENIED,
+        DATA_ACCESS_RESOURCE_FAILURE, TRANSIENT_DATA_ACCESS_RESOURCE, CANNOT_ACQUIRE_LOCK, DEADLOCK_LOSER,
+        CANNOT_SERIALIZE_TRANSACTION
+    }
+
+    private static final Category[] CATEGORIES = Category.values();
+
+    private final String databaseProductName;
+    private final byte[] table; // 인덱스 = 에러 코드, 값 = Category.ordinal() + 1 (0 은 분류 없음)
+    private final int[] otherCodes; // table 밖의 코드, 정렬됨
+    private final byte[] otherCategories;
+    private final SQLExceptionTranslator fallback;
+
+    PreResolvedExceptionTranslator(SQLErrorCodes errorCodes) {
+        this.databaseProductName = errorCodes.getDatabaseProductName();
+        if (errorCodes.isUseSqlStateForTranslation()) {
+            this.table = new byte[0];
+            this.otherCodes = new int[0];
+            this.otherCategories = new byte[0];
+            this.fallback = new SQLErrorCodeSQLExceptionTranslator(errorCodes);
+            return;
+        }
+
+        Map<Integer, Category> codes = new TreeMap<>();
+        add(codes, errorCodes.getBadSqlGrammarCodes(), Category.BAD_SQL_GRAMMAR);
+        add(codes, errorCodes.getInvalidResultSetAccessCodes(), Category.INVALID_RESULT_SET_ACCESS);
+        add(codes, errorCodes.getDuplicateKeyCodes(), Category.DUPLICATE_KEY);
+        add(codes, errorCodes.getDataIntegrityViolationCodes(), Category.DATA_INTEGRITY_VIOLATION);
+        add(codes, errorCodes.getPermissionDeniedCodes(), Category.PERMISSION_DENIED);
+        add(codes, errorCodes.getDataAccessResourceFailureCodes(), Category.DATA_ACCESS_RESOURCE_FAILURE);
+        add(codes, errorCodes.getTransientDataAccessResourceCodes(), Category.TRANSIENT_DATA_ACCESS_RESOURCE);
+        add(codes, errorCodes.getCannotAcquireLockCodes(), Category.CANNOT_ACQUIRE_LOCK);
+        add(codes, errorCodes.getDeadlockLoserCodes(), Category.DEADLOCK_LOSER);
+        add(codes, errorCodes.getCannotSerializeTransactionCodes(), Category.CANNOT_SERIALIZE_TRANSACTION);
+
+        int maxIndexed = codes.keySet().stream().filter(code -> code >= 0 && code < MAX_TABLE_SIZE)
+                .mapToInt(Integer::intValue).max().orElse(-1);
+        this.table = new byte[maxIndexed + 1];
+        int others = (int) codes.keySet().stream().filter(code -> code < 0 || code > maxIndexed).count();
+        this.otherCodes = new int[others];
+        this.otherCategories = new byte[others];
+        int i = 0;
+        for (Map.Entry<Integer, Category> entry : codes.entrySet()) { // TreeMap 이라서 otherCodes 도 정렬된다.
+            int code = entry.getKey();
+            byte category = (byte) (entry.getValue().ordinal() + 1);
+            if (code >= 0 && code <= maxIndexed) {
+                table[code] = category;
+            } else {
+                otherCodes[i] = code;
+                otherCategories[i++] = category;
+            }
+        }
+        this.fallback = new SQLExceptionSubclassTranslator();
+    }
+
+    // 숫자가 아닌 코드는 건너뛴다. 에러 코드가 숫자가 아닌 DB 는 useSqlStateForTranslation 으로 처리한다.
+    private static void add(Map<Integer, Category> codes, String[] values, Category category) {
+        for (String value : values) {
+            try {
+                codes.putIfAbsent(Integer.parseInt(value.trim()), category);
+            } catch (NumberFormatException e) {
+                // 건너뛴다.
+            }
+        }
+    }
+
+    String getDatabaseProductName() {
+        return databaseProductName;
+    }
+
+    // 에러 코드의 분류, 표에 없으면 null
+    Category category(int errorCode) {
+        int value;
+        if (errorCode >= 0 && errorCode < table.length) {
+            value = table[errorCode];
+        } else {
+            int index = Arrays.binarySearch(otherCodes, errorCode);
+            value = index < 0 ? 0 : otherCategories[index];
+        }
+        return value == 0 ? null : CATEGORIES[value - 1];
+    }
+
+    @Override
+    public DataAccessException translate(String task, String sql, SQLException ex) {
+        SQLException sqlEx = ex;
+        // 배치 실패는 안쪽 예외에 진짜 에러 코드가 있다. (SQLErrorCodeSQLExceptionTranslator 와 같다.)
+        if (sqlEx instanceof BatchUpdateException && sqlEx.getNextException() != null) {
+            SQLException nestedSqlEx = sqlEx.getNextException();
+            if (nestedSqlEx.getErrorCode() > 0 || nestedSqlEx.getSQLState() != null) {
+                sqlEx = nestedSqlEx;
+            }
+        }
+
+        Category category = category(sqlEx.getErrorCode());
+        if (category == null) {
+            return fallback.translate(task, sql, sqlEx);
+        }
+        String message = task + "; " + (sql != null ? "SQL [" + sql + "]; " : "") + sqlEx.getMessage();
+        switch (category) {
+            case BAD_SQL_GRAMMAR:
+                return new BadSqlGrammarException(task, sql != null ? sql : "", sqlEx);
+            case INVALID_RESULT_SET_ACCESS:
+                return new InvalidResultSetAccessException(task, sql != null ? sql : "", sqlEx);
+            case DUPLICATE_KEY:
+                // 키 중복은 서비스가 잡아서 복구하는 예상된 예외라서 스택 트레이스 정책을 따른다.
+                return StackTracePolicy.getMode() == StackTracePolicy.Mode.FULL
+                        ? new DuplicateKeyException(message, sqlEx) : new PolicyDuplicateKeyException(message, sqlEx);
+            case DATA_INTEGRITY_VIOLATION:
+                return new DataIntegrityViolationException(message, sqlEx);
+            case PERMISSION_DENIED:
+                return new PermissionDeniedDataAccessException(message, sqlEx);
+            case DATA_ACCESS_RESOURCE_FAILURE:
+                return new DataAccessResourceFailureException(message, sqlEx);
+            case TRANSIENT_DATA_ACCESS_RESOURCE:
+                return new TransientDataAccessResourceException(message, sqlEx);
+            case CANNOT_ACQUIRE_LOCK:
+                return new CannotAcquireLockException(message, sqlEx);
+            case DEADLOCK_LOSER:
+                return new DeadlockLoserDataAccessException(message, sqlEx);
+            default:
+                return new CannotSerializeTransactionException(message, sqlEx);
+        }
+    }
+
+    // StackTracePolicy 에 따라 스택 트레이스를 남기는 DuplicateKeyException - FULL 이 아닐 때만 쓴다.
+    static class PolicyDuplicateKeyException extends DuplicateKeyException {
+
+        PolicyDuplicateKeyException(String message, Throwable cause) {
+            super(message, cause);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return StackTracePolicy.captureStackTrace() ? super.fillInStackTrace() : this;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package hello.jdbc.repository;
+
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 대량 등록 결과
+ * saveAll()로 저장된 건수와 키 중복으로 저장하지 못한 회원 id 목록을 담는다.
+ */
+@ToString
+public class SaveAllResult {
+
+    private int savedCount;
+    private final List<String> duplicateIds = new ArrayList<>();
+
+    public int getSavedCount() {
+        return savedCount;
+    }
+
+    public List<String> getDuplicateIds() {
+        return Collections.unmodifiableList(duplicateIds);
+    }
+
+    public boolean hasDuplicates() {
+        return !duplicateIds.isEmpty();
+    }
+
+    void saved(int count) {
+        savedCount += count;
+    }
+
+    void duplicate(String memberId) {
+        duplicateIds.add(memberId);
+    }
+}
@@ -0,0 +1,207 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 회원 샤딩 - member_id 해시로 여러 DB 중 하나에 저장한다.
+ * DataSource 마다 MemberRepositoryV5 를 하나씩 만들고, 일관된 해싱(consistent hashing)으로 회원을 나눈다.
+ * 샤드를 하나 추가해도 전체 회원 중 약 1/N 만 자리가 바뀐다.
+ *
+ * 한 건 작업(save, findById, update, delete, adjustBalance)은 해당 샤드 하나로 보낸다.
+ * saveAll(), findAllByIds(), findPage()는 샤드별로 나눠서 executor 에서 동시에 실행하고 결과를 합친다.
+ *
+ * 샤드마다 커넥션이 다르기 때문에 여러 샤드에 걸친 트랜잭션은 지원하지 않는다.
+ */
+public class ShardedMemberRepository implements MemberRepository {
+
+    private static final int VIRTUAL_NODES = 160; // 샤드 하나가 링 위에 차지하는 점 수
+
+    private final List<MemberRepository> shards;
+    private final Executor executor;
+
+    // 해시 링 - 정렬된 점 위치와 그 점의 샤드 번호
+    private final int[] ringHashes;
+    private final int[] ringShards;
+
+    public ShardedMemberRepository(List<DataSource> dataSources, Executor executor) {
+        Assert.notEmpty(dataSources, "dataSources must not be empty");
+        this.shards = new ArrayList<>(dataSources.size());
+        for (DataSource dataSource : dataSources) {
+            shards.add(new MemberRepositoryV5(dataSource));
+        }
+        this.executor = executor;
+
+        long[] points = new long[dataSources.size() * VIRTUAL_NODES];
+        for (int shard = 0; shard < dataSources.size(); shard++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                int hash = hash("shard-" + shard + "#" + v);
+                // 위 32비트에 해시, 아래에 샤드 번호를 넣고 정렬한다.
+                points[shard * VIRTUAL_NODES + v] = ((long) hash << 32) | shard;
+            }
+        }
+        Arrays.sort(points);
+        this.ringHashes = new int[points.length];
+        this.ringShards = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            ringHashes[i] = (int) (points[i] >> 32);
+            ringShards[i] = (int) points[i];
+        }
+    }
+
+    @Override
+    public Member save(Member member) {
+        return shardOf(member.getMemberId()).save(member);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return shardOf(memberId).findById(memberId);
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return shardOf(memberId).findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        shardOf(memberId).update(memberId, money);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        shardOf(memberId).delete(memberId);
+    }
+
+    @Override
+    public SaveAllResult saveAll(Collection<Member> members) {
+        Map<Integer, List<Member>> byShard = group(members, Member::getMemberId);
+        SaveAllResult result = new SaveAllResult();
+        for (SaveAllResult shardResult : fanOut(byShard, (shard, shardMembers) -> shard.saveAll(shardMembers))) {
+            result.saved(shardResult.getSavedCount());
+            shardResult.getDuplicateIds().forEach(result::duplicate);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        Map<Integer, List<String>> byShard = group(memberIds, Function.identity());
+        Map<String, Member> result = new HashMap<>();
+        for (Map<String, Member> shardResult : fanOut(byShard, MemberRepository::findAllByIds)) {
+            result.putAll(shardResult);
+        }
+        return result;
+    }
+
+    // 샤드 순서대로 이어 붙인다. 샤드 하나를 다 읽으면 그 커서를 닫고 다음 샤드를 연다. (member_id 순서는 아니다.)
+    @Override
+    public Stream<Member> streamAll() {
+        return shards.stream().flatMap(MemberRepository::streamAll);
+    }
+
+    // 샤드마다 limit 건씩 받아서 합친 다음 member_id 순서로 앞에서 limit 건을 자른다.
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        Assert.isTrue(limit > 0, "limit must be positive");
+        Map<Integer, String> all = new LinkedHashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            all.put(shard, afterMemberId);
+        }
+        return fanOut(all, (shard, after) -> shard.findPage(after, limit)).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(Member::getMemberId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean adjustBalance(String memberId, int delta) {
+        return shardOf(memberId).adjustBalance(memberId, delta);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    // memberId 가 저장되는 샤드 번호 - 링에서 해시보다 크거나 같은 첫 점, 없으면 처음 점
+    int shardIndex(String memberId) {
+        int index = Arrays.binarySearch(ringHashes, hash(memberId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return ringShards[index == ringHashes.length ? 0 : index];
+    }
+
+    private MemberRepository shardOf(String memberId) {
+        return shards.get(shardIndex(memberId));
+    }
+
+    private <T> Map<Integer, List<T>> group(Collection<T> items, Function<T, String> memberId) {
+        Map<Integer, List<T>> byShard = new LinkedHashMap<>();
+        for (T item : items) {
+            byShard.computeIfAbsent(shardIndex(memberId.apply(item)), k -> new ArrayList<>()).add(item);
+        }
+        return byShard;
+    }
+
+    // 샤드별 작업을 동시에 실행하고 모두 끝날 때까지 기다린다. 샤드가 하나면 호출한 스레드에서 바로 실행한다.
+    private <T, R> List<R> fanOut(Map<Integer, T> byShard, ShardCall<T, R> call) {
+        if (byShard.size() == 1) {
+            Map.Entry<Integer, T> only = byShard.entrySet().iterator().next();
+            return List.of(call.apply(shards.get(only.getKey()), only.getValue()));
+        }
+
+        List<CompletableFuture<R>> futures = new ArrayList<>(byShard.size());
+        for (Map.Entry<Integer, T> entry : byShard.entrySet()) {
+            MemberRepository shard = shards.get(entry.getKey());
+            futures.add(CompletableFuture.supplyAsync(() -> call.apply(shard, entry.getValue()), executor));
+        }
+        List<R> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<R> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            // 샤드에서 던진 예외를 그대로 던진다.
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    // String.hashCode() 는 비슷한 문자열끼리 값이 몰려서 한 번 더 섞는다. (murmur3 finalizer)
+    private static int hash(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    @FunctionalInterface
+    private interface ShardCall<T, R> {
+        R apply(MemberRepository shard, T argument);
+    }
+}
@@ -0,0 +1,137 @@
+package hello.jdbc.repository;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * String -> int 오픈 어드레싱 해시 맵 (선형 탐사)
+ * HashMap<String, Member> 는 회원마다 Node, Member, 박싱된 값 같은 객체를 만든다.
+ * 여기서는 키 배열과 값 배열 두 개만 쓴다. 값은 int 그대로 들고 있다.
+ *
+ * 동기화하지 않는다. 여러 스레드가 쓰려면 밖에서 락을 잡아야 한다.
+ */
+final class StringIntHashMap {
+
+    // 삭제된 자리 표시 - 탐사를 이어가야 하므로 null 로 비우지 않는다. (== 로 비교한다.)
+    private static final String DELETED = new String("<deleted>");
+    private static final float LOAD_FACTOR = 0.7f;
+
+    private String[] keys;
+    private int[] values;
+    private int size; // 실제 키 수
+    private int used; // 키 + 삭제 표시 수
+    private int threshold;
+
+    StringIntHashMap(int expectedSize) {
+        allocate(tableSizeFor((int) (Math.max(expectedSize, 8) / LOAD_FACTOR) + 1));
+    }
+
+    int size() {
+        return size;
+    }
+
+    // 키가 있는 자리, 없으면 -1
+    int indexOf(String key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            String k = keys[i];
+            if (k == null) {
+                return -1;
+            }
+            if (k != DELETED && k.equals(key)) {
+                return i;
+            }
+        }
+    }
+
+    int valueAt(int index) {
+        return values[index];
+    }
+
+    void setValueAt(int index, int value) {
+        values[index] = value;
+    }
+
+    void removeAt(int index) {
+        keys[index] = DELETED;
+        size--;
+    }
+
+    // 키가 없을 때만 넣는다. 넣었으면 true
+    boolean putIfAbsent(String key, int value) {
+        int mask = keys.length - 1;
+        int deleted = -1;
+        int i = slot(key, mask);
+        for (; ; i = (i + 1) & mask) {
+            String k = keys[i];
+            if (k == null) {
+                break;
+            }
+            if (k == DELETED) {
+                if (deleted < 0) {
+                    deleted = i;
+                }
+            } else if (k.equals(key)) {
+                return false;
+            }
+        }
+
+        if (deleted >= 0) {
+            i = deleted; // 삭제된 자리를 재사용한다.
+        } else {
+            used++;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if (used > threshold) {
+            // 삭제 표시가 많이 쌓인 경우라면 같은 크기로 다시 만들어서 정리만 한다.
+            rehash(size + 1 > threshold / 2 ? keys.length * 2 : keys.length);
+        }
+        return true;
+    }
+
+    void forEach(ObjIntConsumer<String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            String k = keys[i];
+            if (k != null && k != DELETED) {
+                action.accept(k, values[i]);
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            String k = oldKeys[j];
+            if (k != null && k != DELETED) {
+                int i = slot(k, mask);
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                values[i] = oldValues[j];
+                used++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        values = new int[capacity];
+        used = 0;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int slot(String key, int mask) {
+        int h = key.hashCode() * 0x9E3779B9; // 피보나치 해싱 - 비슷한 문자열의 해시도 고르게 퍼진다.
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int tableSizeFor(int n) {
+        int capacity = Integer.highestOneBit(Math.max(n - 1, 1)) << 1;
+        return Math.max(capacity, 16);
+    }
+}
@@ -0,0 +1,25 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+
+/**
+ * 낙관적 락 - member 테이블의 version 컬럼으로 동시 변경을 감지한다.
+ * alter table member add column version bigint default 0 not null (src/main/resources/db/schema.sql)
+ *
+ * version 을 조건으로 걸지 않는 변경(update(memberId, money), adjustBalance, adjustBalances)도 version 을 하나씩 올린다.
+ * 그래야 읽은 뒤에 다른 방식으로 바뀐 잔액을 덮어쓰지 않는다. member.money 를 바꾸는 sql 은 모두 version 을 올려야 한다.
+ * 조회할 때 version 을 같이 읽고, 변경할 때 where 절에 읽은 version 을 넣는다.
+ * 그 사이에 다른 트랜잭션이 먼저 바꿨으면 version 이 달라서 변경된 행이 없다.
+ * 락을 잡지 않으므로 충돌이 드문 계좌에서는 select ... for update 보다 싸다. 충돌하면 호출한 쪽이 다시 시도한다.
+ */
+public interface VersionedMemberRepository {
+
+    // version 까지 채운 회원을 돌려준다.
+    Member findByIdWithVersion(String memberId);
+
+    /**
+     * update member set money=?, version=version+1 where member_id=? and version=?
+     * 변경했으면 true, 그 사이에 다른 트랜잭션이 바꿨거나 회원이 없으면 false
+     */
+    boolean update(String memberId, int money, long version);
+}
@@ -17,4 +17,15 @@ public class MyDbException extends RuntimeException { // RuntimeException는 언
     public MyDbException(Throwable cause) {
         super(cause);
     }
+
+    // 스택 트레이스와 suppressed 예외를 아예 남기지 않는 예외 (미리 만들어 두고 같이 쓰는 인스턴스용)
+    protected MyDbException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
+    // 스택 트레이스는 StackTracePolicy 에 따라 남긴다. 기본값(FULL)이면 자바 기본 동작과 같다.
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return StackTracePolicy.captureStackTrace() ? super.fillInStackTrace() : this;
+    }
 }
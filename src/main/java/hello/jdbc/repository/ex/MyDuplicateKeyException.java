@@ -7,6 +7,9 @@ package hello.jdbc.repository.ex;
  */
 public class MyDuplicateKeyException extends MyDbException {
 
+    private static final MyDuplicateKeyException SHARED =
+            new MyDuplicateKeyException("duplicate key", null, false, false);
+
     public MyDuplicateKeyException() {
     }
 
@@ -21,4 +24,17 @@ public class MyDuplicateKeyException extends MyDbException {
     public MyDuplicateKeyException(Throwable cause) {
         super(cause);
     }
+
+    private MyDuplicateKeyException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
+    /**
+     * 미리 만들어 둔 키 중복 예외 - 예외 종류만 보고 복구하는 곳에서 던진다. 만드는 비용이 전혀 없다.
+     * 모든 스레드가 같은 인스턴스를 던지므로 원인(SQLException)도 스택 트레이스도 없고, 바꿀 수도 없다.
+     * 원인을 남겨야 하면 new MyDuplicateKeyException(e) 를 쓴다.
+     */
+    public static MyDuplicateKeyException shared() {
+        return SHARED;
+    }
 }
@@ -0,0 +1,82 @@
+package hello.jdbc.repository.ex;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 예상된 데이터 접근 예외의 스택 트레이스 정책
+ * 키 중복처럼 서비스가 잡아서 복구하는 예외는 흐름 제어에 가깝다. 그런데 예외를 만들 때마다 fillInStackTrace() 가
+ * 호출 스택 전체를 걷는다. 호출이 깊을수록 비싸고, 보통 이 트레이스는 아무도 보지 않는다.
+ *
+ * - FULL    : 항상 스택 트레이스를 남긴다. (기본값, 자바 기본 동작과 같다.)
+ * - SAMPLED : sampleRate 번에 한 번 정도만 남긴다. 로그에 가끔 전체 트레이스가 찍혀서 어디서 나는지는 알 수 있다.
+ * - NONE    : 남기지 않는다. 메시지와 원인(cause)은 그대로 있다.
+ *
+ * MyDbException, MyDuplicateKeyException 과 레지스트리 변환기가 만드는 DuplicateKeyException 에 적용된다.
+ * 시작할 때 -Dhello.jdbc.exception.stack-trace=sampled -Dhello.jdbc.exception.stack-trace-sample-rate=100 으로 정하거나
+ * setMode() 로 바꾼다. 잘못된 값은 경고를 남기고 FULL, 표본 비율 1 이상으로 바로잡는다.
+ * (예외를 만들 때 처음 쓰는 클래스라서 초기화에서 던지면 NoClassDefFoundError 로 번진다.)
+ */
+@Slf4j
+public final class StackTracePolicy {
+
+    public enum Mode {
+        FULL, SAMPLED, NONE
+    }
+
+    private static volatile Mode mode = parseMode(System.getProperty("hello.jdbc.exception.stack-trace", "full"));
+    private static volatile int sampleRate = parseSampleRate(
+            Integer.getInteger("hello.jdbc.exception.stack-trace-sample-rate", 100));
+
+    private StackTracePolicy() {
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    public static void setMode(Mode mode) {
+        Assert.notNull(mode, "mode must not be null");
+        StackTracePolicy.mode = mode;
+    }
+
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+
+    // SAMPLED 일 때 몇 번에 한 번 스택 트레이스를 남길지
+    public static void setSampleRate(int sampleRate) {
+        Assert.isTrue(sampleRate > 0, "sampleRate must be positive");
+        StackTracePolicy.sampleRate = sampleRate;
+    }
+
+    static Mode parseMode(String value) {
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warn("unknown hello.jdbc.exception.stack-trace = {}, using FULL", value);
+            return Mode.FULL;
+        }
+    }
+
+    static int parseSampleRate(int value) {
+        if (value < 1) {
+            log.warn("hello.jdbc.exception.stack-trace-sample-rate = {} must be positive, using 1", value);
+            return 1;
+        }
+        return value;
+    }
+
+    // 이번에 만드는 예외가 스택 트레이스를 남겨야 하는지 - 예외의 fillInStackTrace() 에서 부른다.
+    public static boolean captureStackTrace() {
+        Mode current = mode;
+        if (current == Mode.FULL) {
+            return true;
+        }
+        // 스레드끼리 카운터를 같이 쓰면 경합이 생겨서 난수로 고른다.
+        return current == Mode.SAMPLED && ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+}
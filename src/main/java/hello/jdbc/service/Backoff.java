@@ -0,0 +1,43 @@
+package hello.jdbc.service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 지터를 넣은 지수 백오프 (full jitter)
+ * n 번째 재시도 전에 0 ~ min(max, base * 2^(n-1)) 사이 임의 시간만큼 쉰다.
+ * 같은 이유로 동시에 실패한 요청들이 같은 순간에 다시 몰리지 않도록 흩어 놓는다.
+ */
+class Backoff {
+
+    private final long baseNanos;
+    private final long maxNanos;
+
+    Backoff(Duration base, Duration max) {
+        this.baseNanos = base.toNanos();
+        this.maxNanos = max.toNanos();
+    }
+
+    long delayNanos(int attempt) {
+        long ceiling = baseNanos << Math.min(attempt - 1, 30);
+        if (ceiling < 0 || ceiling > maxNanos) {
+            ceiling = maxNanos;
+        }
+        if (ceiling <= 0) {
+            return 0;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    void sleep(int attempt) {
+        long delay = delayNanos(attempt);
+        if (delay == 0) {
+            return;
+        }
+        LockSupport.parkNanos(delay);
+        if (Thread.currentThread().isInterrupted()) {
+            throw new IllegalStateException("interrupted while backing off");
+        }
+    }
+}
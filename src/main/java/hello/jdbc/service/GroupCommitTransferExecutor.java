@@ -0,0 +1,248 @@
+package hello.jdbc.service;
+
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 그룹 커밋 계좌이체 - 동시에 들어온 이체 요청을 모아서 트랜잭션 하나로 커밋한다.
+ * 이체마다 커밋하면 커밋 비용(로그 기록, 락 해제, 커넥션 왕복)이 처리량의 상한이 된다. 묶으면 그 비용을 나눠 낸다.
+ *
+ * - submit() 은 요청을 큐에 넣고 바로 CompletableFuture 를 돌려준다.
+ * - 커밋 스레드 하나가 첫 요청을 받은 뒤 maxWait 동안 또는 maxGroupSize 건이 찰 때까지 더 모은다.
+ * - 요청마다 세이브포인트를 잡고 실행한다. 실패한 요청은 세이브포인트로 되돌리고 나머지는 계속 진행한다.
+ * - 커밋이 끝나면 성공한 요청의 future 를 완료하고, 실패한 요청은 그 예외로 완료한다.
+ *   커밋 자체가 실패하면 그룹 전체가 실패한다.
+ * - 커밋 스레드가 예상 못한 예외나 Error 로 죽으면 모으던 그룹과 큐에 남은 요청을 그 예외로 실패시키고, 이후 요청도 받지 않는다.
+ *
+ * 이체는 잔액을 상대값으로 바꾼다. (adjustBalance, accountTransferAtomic 과 같다.)
+ * 커밋될 때까지 기다리는 시간이 생기므로 요청 한 건의 지연 시간은 maxWait 만큼 늘 수 있다.
+ */
+@Slf4j
+public class GroupCommitTransferExecutor implements AutoCloseable {
+
+    private final TransactionTemplate txTemplate;
+    private final MemberRepository memberRepository;
+    private final int maxGroupSize;
+    private final long maxWaitNanos;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    private final LongAdder groups = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+
+    public GroupCommitTransferExecutor(PlatformTransactionManager transactionManager, MemberRepository memberRepository) {
+        this(transactionManager, memberRepository, 64, Duration.ofNanos(200_000)); // 200us
+    }
+
+    public GroupCommitTransferExecutor(PlatformTransactionManager transactionManager, MemberRepository memberRepository,
+                                       int maxGroupSize, Duration maxWait) {
+        Assert.isTrue(maxGroupSize > 0, "maxGroupSize must be positive");
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.memberRepository = memberRepository;
+        this.maxGroupSize = maxGroupSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.committer = new Thread(this::run, "group-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    // 음수를 보내면 방향이 뒤집혀서 toId 의 돈을 가져온다. 그룹 트랜잭션에 넣기 전에 막는다.
+    public CompletableFuture<Void> submit(String fromId, String toId, int money) {
+        Assert.isTrue(money > 0, "money must be positive");
+        Assert.isTrue(!fromId.equals(toId), "fromId and toId must differ");
+        Request request = new Request(fromId, toId, money);
+        if (!running) {
+            request.future.completeExceptionally(new IllegalStateException("executor is closed"));
+            return request.future;
+        }
+        queue.add(request);
+        // 넣는 사이에 close() 가 큐를 비웠을 수 있다. 아직 큐에 있으면 꺼내서 실패시킨다.
+        // 꺼내지 못했다면 커밋 스레드나 close() 가 이미 가져가서 완료한다.
+        if (!running && queue.remove(request)) {
+            request.future.completeExceptionally(new IllegalStateException("executor is closed"));
+        }
+        return request.future;
+    }
+
+    // 커밋될 때까지 기다린다. 실패하면 그 이체에서 난 예외를 그대로 던진다.
+    public void accountTransfer(String fromId, String toId, int money) {
+        try {
+            submit(fromId, toId, money).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public long getGroupCount() {
+        return groups.sum();
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    // 그룹 하나에 평균 몇 건이 들어갔는지
+    public double getAverageGroupSize() {
+        long count = groups.sum();
+        return count == 0 ? 0 : (double) requests.sum() / count;
+    }
+
+    // 큐에 남은 요청은 실패로 완료한다.
+    @Override
+    public void close() {
+        running = false;
+        committer.interrupt();
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued(new IllegalStateException("executor is closed"));
+    }
+
+    private void run() {
+        List<Request> group = new ArrayList<>(maxGroupSize);
+        try {
+            while (running) {
+                try {
+                    Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    group.add(first);
+                    collect(group);
+                } catch (InterruptedException e) {
+                    if (group.isEmpty()) {
+                        break; // close()
+                    }
+                }
+                commit(group);
+                group.clear();
+            }
+        } catch (RuntimeException | Error e) {
+            // 완료하지 못한 future 를 기다리는 쪽이 영원히 멈추지 않도록 실패로 완료한다.
+            running = false;
+            log.error("group commit thread died, size = {}", group.size(), e);
+            for (Request request : group) {
+                request.future.completeExceptionally(e);
+            }
+            failQueued(e);
+            throw e;
+        }
+    }
+
+    private void failQueued(Throwable cause) {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(cause);
+        }
+    }
+
+    // 이미 쌓인 요청은 바로 가져오고, 모자라면 첫 요청부터 maxWait 가 지날 때까지 기다린다.
+    private void collect(List<Request> group) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (group.size() < maxGroupSize) {
+            if (queue.drainTo(group, maxGroupSize - group.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    private void commit(List<Request> group) {
+        List<RuntimeException> failures = new ArrayList<>(group.size());
+        try {
+            txTemplate.executeWithoutResult(status -> {
+                for (Request request : group) {
+                    failures.add(execute(status, request));
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("group commit failed, size = {}", group.size(), e);
+            for (Request request : group) {
+                request.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        groups.increment();
+        requests.add(group.size());
+        for (int i = 0; i < group.size(); i++) {
+            RuntimeException failure = failures.get(i);
+            if (failure == null) {
+                group.get(i).future.complete(null);
+            } else {
+                group.get(i).future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    // 세이브포인트 안에서 이체 한 건 - 실패하면 이 건만 되돌리고 예외를 돌려준다.
+    private RuntimeException execute(TransactionStatus status, Request request) {
+        Object savepoint = status.createSavepoint();
+        try {
+            bizLogic(request.fromId, request.toId, request.money);
+            status.releaseSavepoint(savepoint);
+            return null;
+        } catch (RuntimeException e) {
+            status.rollbackToSavepoint(savepoint);
+            return e;
+        }
+    }
+
+    private void bizLogic(String fromId, String toId, int money) {
+        if (!memberRepository.adjustBalance(fromId, -money)) {
+            throw new IllegalStateException("잔액 부족 또는 없는 회원 fromId = " + fromId);
+        }
+        validation(toId); // 예외 발생 상황 확인
+        if (!memberRepository.adjustBalance(toId, money)) {
+            throw new IllegalStateException("member not found memberId = " + toId);
+        }
+    }
+
+    private void validation(String toId) {
+        if (toId.equals("ex")) { // 예외 발생 상황 확인
+            throw new IllegalStateException("이체중 예외 발생");
+        }
+    }
+
+    private static class Request {
+        private final String fromId;
+        private final String toId;
+        private final int money;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Request(String fromId, String toId, int money) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.money = money;
+        }
+    }
+}
@@ -66,6 +66,7 @@ public class MemberServiceV2 {
         if (con != null) {
             try {
                 con.setAutoCommit(true); // 자동 커밋, 커넥션 풀 고려
+                con.close(); // 커넥션 풀이면 풀에 반납된다.
             } catch (Exception e) {
                 log.info("error", e);
             }
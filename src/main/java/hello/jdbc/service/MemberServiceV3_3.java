@@ -30,6 +30,12 @@ public class MemberServiceV3_3 {
         bizLogic(fromId, toId, money);
     }
 
+    // 회원 조회 - 읽기 전용 트랜잭션 (읽기/쓰기 분리 데이터소스를 쓰면 replica 에서 읽는다.)
+    @Transactional(readOnly = true)
+    public Member findMember(String memberId) throws SQLException {
+        return memberRepository.findById(memberId);
+    }
+
     // 비즈니스 로직
     private void bizLogic(String fromId, String toId, int money) throws SQLException {
         // 회원 꺼내기
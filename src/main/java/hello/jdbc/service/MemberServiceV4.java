@@ -4,6 +4,9 @@ import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+
+import java.util.NoSuchElementException;
 
 /**
  * 스프링과 문제 해결 (예외 처리, 반복) - 런타임 예외 적용
@@ -30,6 +33,48 @@ public class MemberServiceV4 {
         bizLogic(fromId, toId, money);
     }
 
+    // 계좌이체 - 조회 없이 잔액을 상대값으로 변경한다.
+    // update 두 번으로 끝나고, 잔액 부족은 변경된 행 수로 알 수 있다.
+    // 음수를 보내면 방향이 뒤집혀서 toId 의 돈을 가져온다. 잔액을 바꾸기 전에 막는다. (TransferNettingService 와 같다.)
+    // @Transactional 프록시 안에서 검사하므로 트랜잭션(커넥션)은 이미 시작됐고, 예외가 나면 바로 롤백된다.
+    @Transactional
+    public void accountTransferAtomic(String fromId, String toId, int money) {
+        Assert.isTrue(money > 0, "money must be positive");
+        if (!memberRepository.adjustBalance(fromId, -money)) {
+            throw new IllegalStateException("잔액 부족 또는 없는 회원 fromId = " + fromId);
+        }
+        validation(toId); // 예외 발생 상황 확인
+        if (!memberRepository.adjustBalance(toId, money)) {
+            throw new NoSuchElementException("member not found memberId = " + toId);
+        }
+    }
+
+    // 계좌이체 - 두 회원을 member_id 순서로 select ... for update 해서 락을 잡고 나서 변경한다.
+    // A->B 와 B->A 가 동시에 들어와도 둘 다 같은 순서로 락을 잡으므로 교착 상태가 생기지 않고,
+    // 락을 잡은 뒤에 읽은 잔액으로 계산하므로 다른 트랜잭션의 변경을 덮어쓰지 않는다.
+    @Transactional
+    public void accountTransferOrdered(String fromId, String toId, int money) {
+        Member fromMember;
+        Member toMember;
+        if (fromId.compareTo(toId) < 0) {
+            fromMember = memberRepository.findByIdForUpdate(fromId);
+            toMember = memberRepository.findByIdForUpdate(toId);
+        } else {
+            toMember = memberRepository.findByIdForUpdate(toId);
+            fromMember = memberRepository.findByIdForUpdate(fromId);
+        }
+
+        memberRepository.update(fromId, fromMember.getMoney() - money);
+        validation(toMember); // 예외 발생 상황 확인
+        memberRepository.update(toId, toMember.getMoney() + money);
+    }
+
+    // 회원 조회 - 읽기 전용 트랜잭션 (읽기/쓰기 분리 데이터소스를 쓰면 replica 에서 읽는다.)
+    @Transactional(readOnly = true)
+    public Member findMember(String memberId) {
+        return memberRepository.findById(memberId);
+    }
+
     // 비즈니스 로직
     private void bizLogic(String fromId, String toId, int money) {
         // 회원 꺼내기
@@ -46,7 +91,11 @@ public class MemberServiceV4 {
     }
 
     private void validation(Member toMember) {
-        if (toMember.getMemberId().equals("ex")) { // 예외 발생 상황 확인
+        validation(toMember.getMemberId());
+    }
+
+    private void validation(String toId) {
+        if (toId.equals("ex")) { // 예외 발생 상황 확인
             throw new IllegalStateException("이체중 예외 발생");
         }
     }
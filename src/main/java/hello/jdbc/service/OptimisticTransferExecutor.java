@@ -0,0 +1,102 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.VersionedMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 계좌이체 - 낙관적 락 + 재시도
+ * 락 없이 version 과 함께 읽고, version 조건으로 변경한다. 다른 트랜잭션이 먼저 바꿨으면 트랜잭션을 롤백하고 처음부터 다시 한다.
+ *
+ * 재시도는 트랜잭션 밖에서 한다. 시도마다 새 트랜잭션이라서 다시 읽은 최신 값으로 계산한다.
+ * 재시도 사이에는 지터를 넣은 지수 백오프로 쉰다. (0 ~ min(maxBackoff, baseBackoff * 2^(시도-1)) 사이 임의 시간)
+ * 같은 계좌를 노리는 스레드들이 같은 순간에 다시 부딪히지 않도록 흩어 놓는다.
+ * maxAttempts 번 모두 충돌하면 마지막 예외를 던진다.
+ *
+ * version 조건 update 도 행 락은 잡는다. A->B 와 B->A 가 동시에 변경하면 교착 상태로 한쪽이 롤백될 수 있어서
+ * 버전 충돌(OptimisticLockingFailureException)과 함께 다른 동시성 실패(ConcurrencyFailureException)도 다시 시도한다.
+ */
+@Slf4j
+public class OptimisticTransferExecutor {
+
+    private final TransactionTemplate txTemplate;
+    private final VersionedMemberRepository memberRepository;
+    private final int maxAttempts;
+    private final Backoff backoff;
+
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public OptimisticTransferExecutor(PlatformTransactionManager transactionManager, VersionedMemberRepository memberRepository) {
+        this(transactionManager, memberRepository, 5, Duration.ofMillis(1), Duration.ofMillis(50));
+    }
+
+    public OptimisticTransferExecutor(PlatformTransactionManager transactionManager, VersionedMemberRepository memberRepository,
+                                      int maxAttempts, Duration baseBackoff, Duration maxBackoff) {
+        Assert.isTrue(maxAttempts > 0, "maxAttempts must be positive");
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.memberRepository = memberRepository;
+        this.maxAttempts = maxAttempts;
+        this.backoff = new Backoff(baseBackoff, maxBackoff);
+    }
+
+    public void accountTransfer(String fromId, String toId, int money) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                txTemplate.executeWithoutResult(status -> bizLogic(fromId, toId, money));
+                return;
+            } catch (ConcurrencyFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw e;
+                }
+                retries.increment();
+                log.debug("concurrency failure, retry attempt = {}", attempt, e);
+                backoff.sleep(attempt);
+            }
+        }
+    }
+
+    // 충돌 횟수 (마지막 시도까지 포함)
+    public long getConflictCount() {
+        return conflicts.sum();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    // maxAttempts 를 다 쓰고 실패한 이체 수
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+
+    private void bizLogic(String fromId, String toId, int money) {
+        Member fromMember = memberRepository.findByIdWithVersion(fromId);
+        Member toMember = memberRepository.findByIdWithVersion(toId);
+
+        if (!memberRepository.update(fromId, fromMember.getMoney() - money, fromMember.getVersion())) {
+            throw new OptimisticLockingFailureException("version conflict memberId = " + fromId);
+        }
+        validation(toMember); // 예외 발생 상황 확인
+        if (!memberRepository.update(toId, toMember.getMoney() + money, toMember.getVersion())) {
+            throw new OptimisticLockingFailureException("version conflict memberId = " + toId);
+        }
+    }
+
+    private void validation(Member toMember) {
+        if (toMember.getMemberId().equals("ex")) { // 예외 발생 상황 확인
+            throw new IllegalStateException("이체중 예외 발생");
+        }
+    }
+}
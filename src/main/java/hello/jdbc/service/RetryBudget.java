@@ -0,0 +1,57 @@
+package hello.jdbc.service;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 전체 재시도 예산 - 재시도가 원래 요청 수의 일정 비율을 넘지 않게 막는다.
+ * DB 가 느려져서 모든 요청이 실패하기 시작하면, 요청마다 재시도를 하면 부하가 몇 배로 늘어서 더 느려진다. (retry storm)
+ *
+ * 토큰 버킷 - 요청이 들어올 때마다 ratio 만큼 채우고, 재시도할 때마다 1 을 꺼낸다. 버킷은 capacity 까지만 찬다.
+ * 평소에는 가끔 있는 재시도를 다 허용하고, 장애 때는 재시도가 요청의 ratio 배 정도로 줄어든다.
+ * 토큰은 1/1000 단위 정수로 세서 CAS 만으로 갱신한다.
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long depositPerCall;
+    private final long capacity;
+    private final AtomicLong tokens;
+
+    // ratio - 요청 한 건당 허용할 재시도 수 (0.1 이면 10%), capacity - 한꺼번에 허용할 수 있는 재시도 수
+    public RetryBudget(double ratio, int capacity) {
+        Assert.isTrue(ratio >= 0, "ratio must not be negative");
+        Assert.isTrue(capacity > 0, "capacity must be positive");
+        this.depositPerCall = Math.round(ratio * SCALE);
+        this.capacity = capacity * SCALE;
+        this.tokens = new AtomicLong(this.capacity); // 처음에는 가득 차 있다.
+    }
+
+    void deposit() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(capacity, current + depositPerCall)));
+    }
+
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    // 지금 허용할 수 있는 재시도 수
+    public double getAvailable() {
+        return (double) tokens.get() / SCALE;
+    }
+}
@@ -0,0 +1,59 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Transfer;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 상계 정산 결과
+ * 반영한 이체 수, 거절한 이체와 사유, 실제로 update 한 계좌 수를 담는다.
+ */
+@ToString
+public class TransferBatchResult {
+
+    private int acceptedCount;
+    private int updatedAccountCount;
+    private final List<Rejected> rejected = new ArrayList<>();
+
+    public int getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public int getUpdatedAccountCount() {
+        return updatedAccountCount;
+    }
+
+    // 거절한 이체 (들어온 순서)
+    public List<Rejected> getRejected() {
+        return Collections.unmodifiableList(rejected);
+    }
+
+    void accepted() {
+        acceptedCount++;
+    }
+
+    void rejected(Transfer transfer, String reason) {
+        rejected.add(new Rejected(transfer, reason));
+    }
+
+    void updated(int accountCount) {
+        updatedAccountCount = accountCount;
+    }
+
+    @Getter
+    @ToString
+    public static class Rejected {
+
+        private final Transfer transfer;
+        private final String reason;
+
+        Rejected(Transfer transfer, String reason) {
+            this.transfer = transfer;
+            this.reason = reason;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 계좌이체 상계(netting) - 이체 여러 건을 모아서 계좌별 순변동액만 한 트랜잭션에 반영한다.
+ * A->B 100, B->A 30, A->C 10 이면 A -80, B +70, C +10 세 건의 update 로 끝난다.
+ * 이체마다 트랜잭션을 따로 여는 accountTransfer 에 비해 커밋과 update 수가 크게 줄어든다.
+ *
+ * 1. 관련 계좌 잔액을 IN 절 조회 한 번으로 읽는다.
+ * 2. 이체를 들어온 순서대로 메모리에서 적용해 본다. 없는 계좌이거나 잔액이 모자라게 되는 이체는 거절하고 나머지를 진행한다.
+ * 3. 받아들인 이체의 계좌별 순변동액을 member_id 순서로 배치 update 한다. (adjustBalances)
+ *    동시에 도는 다른 정산과 항상 같은 순서로 행 락을 잡으므로 교착 상태가 생기지 않는다.
+ *
+ * 읽은 뒤에 다른 트랜잭션이 잔액을 줄였으면 3 의 update 가 "money + ? >= 0" 조건에 걸린다. 그때는 전체를 롤백한다.
+ */
+@Slf4j
+public class TransferNettingService {
+
+    private final MemberRepository memberRepository;
+
+    public TransferNettingService(MemberRepository memberRepository) {
+        this.memberRepository = memberRepository;
+    }
+
+    @Transactional
+    public TransferBatchResult settle(List<Transfer> transfers) {
+        Set<String> memberIds = new HashSet<>();
+        for (Transfer transfer : transfers) {
+            memberIds.add(transfer.getFromId());
+            memberIds.add(transfer.getToId());
+        }
+        Map<String, Member> members = memberRepository.findAllByIds(memberIds);
+
+        TransferBatchResult result = new TransferBatchResult();
+        Map<String, Integer> balances = new TreeMap<>();
+        Map<String, Integer> deltas = new TreeMap<>(); // member_id 순서로 update 한다.
+        for (Transfer transfer : transfers) {
+            String rejectReason = validate(transfer, members, balances);
+            if (rejectReason != null) {
+                result.rejected(transfer, rejectReason);
+                continue;
+            }
+            balances.put(transfer.getFromId(), balance(transfer.getFromId(), members, balances) - transfer.getMoney());
+            balances.put(transfer.getToId(), balance(transfer.getToId(), members, balances) + transfer.getMoney());
+            deltas.merge(transfer.getFromId(), -transfer.getMoney(), Integer::sum);
+            deltas.merge(transfer.getToId(), transfer.getMoney(), Integer::sum);
+            result.accepted();
+        }
+
+        deltas.values().removeIf(delta -> delta == 0); // 주고받아서 상쇄된 계좌는 update 하지 않는다.
+        List<String> failedIds = memberRepository.adjustBalances(deltas);
+        if (!failedIds.isEmpty()) {
+            // 조회한 뒤에 다른 트랜잭션이 잔액을 바꿨다. 예외를 던져서 전체를 롤백한다.
+            throw new IllegalStateException("잔액이 바뀌어 정산 실패 memberIds = " + failedIds);
+        }
+        result.updated(deltas.size());
+        log.debug("settle transfers = {}, result = {}", transfers.size(), result);
+        return result;
+    }
+
+    // 거절 사유, 문제 없으면 null
+    private String validate(Transfer transfer, Map<String, Member> members, Map<String, Integer> balances) {
+        if (transfer.getMoney() <= 0) {
+            return "money must be positive";
+        }
+        if (transfer.getFromId().equals(transfer.getToId())) {
+            return "same account";
+        }
+        if (!members.containsKey(transfer.getFromId())) {
+            return "member not found memberId = " + transfer.getFromId();
+        }
+        if (!members.containsKey(transfer.getToId())) {
+            return "member not found memberId = " + transfer.getToId();
+        }
+        if (balance(transfer.getFromId(), members, balances) < transfer.getMoney()) {
+            return "insufficient balance memberId = " + transfer.getFromId();
+        }
+        return null;
+    }
+
+    // 앞선 이체를 반영한 잔액
+    private int balance(String memberId, Map<String, Member> members, Map<String, Integer> balances) {
+        return balances.computeIfAbsent(memberId, id -> members.get(id).getMoney());
+    }
+}
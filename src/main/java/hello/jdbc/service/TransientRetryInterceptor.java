@@ -0,0 +1,110 @@
+package hello.jdbc.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 일시적인 DB 실패를 트랜잭션 단위로 다시 시도하는 AOP 인터셉터
+ * MemberRepositoryV4_2, V5 는 SQLException 을 스프링 예외로 바꿔 준다. 그중 다시 하면 성공할 수 있는 실패만 재시도한다.
+ * - TransientDataAccessException (CannotAcquireLockException, DeadlockLoserDataAccessException, QueryTimeoutException 등)
+ * - 원인 중에 SQLTransientException 이나 SQLState 40001(직렬화 실패, 교착 상태)이 있는 예외 (V3 서비스처럼 감싸서 던지는 경우)
+ *
+ * 트랜잭션 전체를 다시 해야 하므로 @Transactional 보다 바깥에 붙여야 한다.
+ * ProxyFactory 에 트랜잭션 인터셉터보다 먼저 넣거나, 어드바이저 순서를 트랜잭션보다 앞으로 둔다.
+ * 이미 바깥 트랜잭션 안에서 호출되면 그 트랜잭션은 롤백만 가능한 상태라서 재시도하지 않는다.
+ *
+ * 재시도 사이에는 지터를 넣은 지수 백오프로 쉬고, 시도 횟수(maxAttempts)와 전체 재시도 예산(RetryBudget)을 넘으면 마지막 예외를 던진다.
+ */
+@Slf4j
+public class TransientRetryInterceptor implements MethodInterceptor {
+
+    private final int maxAttempts;
+    private final Backoff backoff;
+    private final RetryBudget budget;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder attemptsExhausted = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    public TransientRetryInterceptor() {
+        this(5, Duration.ofMillis(1), Duration.ofMillis(100), new RetryBudget(0.1, 100));
+    }
+
+    public TransientRetryInterceptor(int maxAttempts, Duration baseBackoff, Duration maxBackoff, RetryBudget budget) {
+        Assert.isTrue(maxAttempts > 0, "maxAttempts must be positive");
+        this.maxAttempts = maxAttempts;
+        this.backoff = new Backoff(baseBackoff, maxBackoff);
+        this.budget = budget;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return invocation.proceed(); // 바깥 트랜잭션이 재시도를 맡는다.
+        }
+        calls.increment();
+        budget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // 같은 MethodInvocation 은 한 번만 proceed() 할 수 있어서 시도마다 복사본을 쓴다.
+                return ((ProxyMethodInvocation) invocation).invocableClone().proceed();
+            } catch (Throwable e) {
+                if (!isTransient(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    attemptsExhausted.increment();
+                    throw e;
+                }
+                if (!budget.tryWithdraw()) {
+                    budgetExhausted.increment();
+                    throw e;
+                }
+                retries.increment();
+                log.debug("transient failure, retry {} attempt = {}", invocation.getMethod().getName(), attempt, e);
+                backoff.sleep(attempt);
+            }
+        }
+    }
+
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    // maxAttempts 번 모두 실패한 호출 수
+    public long getAttemptsExhaustedCount() {
+        return attemptsExhausted.sum();
+    }
+
+    // 재시도 예산이 없어서 재시도하지 못한 호출 수
+    public long getBudgetExhaustedCount() {
+        return budgetExhausted.sum();
+    }
+
+    static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof SQLTransientException) {
+                return true;
+            }
+            if (cause instanceof SQLException && "40001".equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,21 @@
+-- 예제에서 쓰는 테이블 - H2 콘솔에서 직접 실행한다. (애플리케이션과 테스트는 이 파일을 실행하지 않는다.)
+-- 테스트는 jdbc:h2:tcp://localhost/~/test2 에 이 스키마가 만들어져 있다고 보고 돈다.
+
+drop table member if exists cascade;
+create table member (
+    member_id varchar(10),
+    money integer not null default 0,
+    -- 낙관적 락 (VersionedMemberRepository) - 잔액을 바꾸는 모든 update 가 하나씩 올린다.
+    version bigint not null default 0,
+    primary key (member_id)
+);
+
+-- 회원 ID 발급기 (MemberIdAllocator) - prefix 마다 아직 예약하지 않은 첫 번호
+drop table id_sequence if exists;
+create table id_sequence (
+    name varchar(10) primary key,
+    next_val bigint not null
+);
+
+-- 이미 member 테이블이 있으면 version 컬럼만 추가한다.
+-- alter table member add column if not exists version bigint default 0 not null;
@@ -0,0 +1,83 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class InstrumentedDataSourceTest {
+
+    HikariDataSource hikari;
+    InstrumentedDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        hikari = new HikariDataSource();
+        hikari.setJdbcUrl(URL);
+        hikari.setUsername(USERNAME);
+        hikari.setPassword(PASSWORD);
+        hikari.setMaximumPoolSize(1);
+        hikari.setConnectionTimeout(250);
+        dataSource = new InstrumentedDataSource(hikari, 1); // 매번 잰다.
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.unregisterMBean();
+        hikari.close();
+    }
+
+    @Test
+    void metrics() {
+        MemberRepositoryV5 repository = new MemberRepositoryV5(dataSource);
+        repository.save(new Member("metricA", 10000));
+        repository.findById("metricA");
+        repository.delete("metricA");
+
+        PoolMetrics metrics = dataSource.snapshot();
+        log.info("metrics = {}", metrics);
+        assertThat(metrics.getAcquireCount()).isEqualTo(3);
+        assertThat(metrics.getActiveConnections()).isZero();
+        assertThat(metrics.getIdleConnections()).isEqualTo(1);
+        assertThat(metrics.getHold().getCount()).isEqualTo(3);
+        assertThat(metrics.getHold().getMax()).isPositive();
+    }
+
+    // 하나뿐인 커넥션을 잡고 있으면 다음 요청은 타임아웃
+    @Test
+    void timeout() throws Exception {
+        try (Connection con = dataSource.getConnection()) {
+            assertThat(dataSource.getActiveConnections()).isEqualTo(1);
+            assertThatThrownBy(() -> dataSource.getConnection())
+                    .isInstanceOf(SQLTransientConnectionException.class);
+        }
+        assertThat(dataSource.getTimeoutCount()).isEqualTo(1);
+        assertThat(dataSource.getPendingThreads()).isZero();
+        assertThat(dataSource.getActiveConnections()).isZero();
+    }
+
+    @Test
+    void jmx() throws Exception {
+        dataSource.registerMBean("test");
+        try (Connection con = dataSource.getConnection()) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("hello.jdbc:type=PoolMetrics,name=\"test\"");
+            assertThat(server.getAttribute(name, "ActiveConnections")).isEqualTo(1);
+            assertThat(server.getAttribute(name, "AcquireCount")).isEqualTo(1L);
+        }
+    }
+}
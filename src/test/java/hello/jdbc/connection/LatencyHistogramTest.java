@@ -0,0 +1,38 @@
+package hello.jdbc.connection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000); // 1us ~ 10ms
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(10000);
+        assertThat(snapshot.getMax()).isEqualTo(10_000_000);
+        assertThat(snapshot.getMean()).isCloseTo(5_000_500, within(1.0));
+        // 버킷 오차는 12.5% 이내
+        assertThat((double) snapshot.getValueAtPercentile(50)).isCloseTo(5_000_000, within(5_000_000 * 0.125));
+        assertThat((double) snapshot.getValueAtPercentile(99)).isCloseTo(9_900_000, within(9_900_000 * 0.125));
+        assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(10_000_000);
+    }
+
+    @Test
+    void buckets() {
+        // 모든 값은 자기 칸의 상한 이하이고, 바로 앞 칸의 상한보다 크다.
+        for (long value : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.index(value);
+            assertThat(LatencyHistogram.upperBound(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) {
+                assertThat(LatencyHistogram.upperBound(index - 1)).isLessThan(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class LockFreeConnectionPoolTest {
+
+    LockFreeConnectionPool dataSource = new LockFreeConnectionPool(URL, USERNAME, PASSWORD, 2,
+            Duration.ofMillis(200), Duration.ofMillis(500));
+
+    @AfterEach
+    void afterEach() {
+        dataSource.close();
+    }
+
+    // 같은 스레드가 반납하고 다시 꺼내면 같은 물리 커넥션을 받는다.
+    @Test
+    void reuse() throws SQLException {
+        Connection con1 = dataSource.getConnection();
+        Connection physical = con1.unwrap(Connection.class);
+        con1.close();
+        assertThat(con1.isClosed()).isTrue();
+
+        Connection con2 = dataSource.getConnection();
+        assertThat(con2.unwrap(Connection.class)).isSameAs(physical);
+        con2.close();
+        assertThat(dataSource.getTotalConnections()).isEqualTo(1);
+        assertThat(dataSource.getIdleConnections()).isEqualTo(1);
+    }
+
+    // 다 나가 있으면 기다리다가 시간이 지나면 예외
+    @Test
+    void timeout() throws SQLException {
+        Connection con1 = dataSource.getConnection();
+        Connection con2 = dataSource.getConnection();
+        assertThatThrownBy(() -> dataSource.getConnection())
+                .isInstanceOf(SQLTransientConnectionException.class);
+        con1.close();
+        Connection con3 = dataSource.getConnection();
+        con2.close();
+        con3.close();
+    }
+
+    // 트랜잭션을 열어둔 채로 반납하면 롤백된다.
+    @Test
+    void rollbackOnReturn() throws SQLException {
+        MemberRepositoryV1 repository = new MemberRepositoryV1(dataSource);
+        repository.save(new Member("poolA", 10000));
+        try {
+            Connection con = dataSource.getConnection();
+            con.setAutoCommit(false);
+            con.createStatement().executeUpdate("update member set money = 0 where member_id = 'poolA'");
+            con.close();
+
+            assertThat(repository.findById("poolA").getMoney()).isEqualTo(10000);
+            try (Connection next = dataSource.getConnection()) {
+                assertThat(next.getAutoCommit()).isTrue();
+            }
+        } finally {
+            repository.delete("poolA");
+        }
+    }
+
+    // 스레드 8개가 커넥션 2개를 나눠 쓴다.
+    @Test
+    void concurrent() throws Exception {
+        LockFreeConnectionPool pool = new LockFreeConnectionPool(URL, USERNAME, PASSWORD, 2,
+                Duration.ofSeconds(5), Duration.ofMillis(500));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        try (Connection con = pool.getConnection()) {
+                            con.createStatement().execute("select 1");
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertThat(pool.getTotalConnections()).isLessThanOrEqualTo(2);
+        } finally {
+            executor.shutdown();
+            pool.close();
+        }
+        assertThat(pool.getTotalConnections()).isZero();
+    }
+
+    // 한꺼번에 반납하면 기다리던 스레드가 각각 깨어난다. (같은 스레드를 여러 번 깨우지 않는다.)
+    @Test
+    void releaseWakesDistinctWaiters() throws Exception {
+        int size = 8;
+        LockFreeConnectionPool pool = new LockFreeConnectionPool(URL, USERNAME, PASSWORD, size,
+                Duration.ofSeconds(3), Duration.ofMillis(500));
+        ExecutorService executor = Executors.newFixedThreadPool(size);
+        try {
+            List<Connection> held = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                held.add(pool.getConnection());
+            }
+            List<Future<Long>> waits = new ArrayList<>();
+            for (int t = 0; t < size; t++) {
+                waits.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    Connection con = pool.getConnection(); // 받은 커넥션은 끝날 때까지 쥐고 있는다.
+                    long waited = System.nanoTime() - start;
+                    Thread.sleep(500);
+                    con.close();
+                    return waited;
+                }));
+            }
+            Thread.sleep(300); // 모두 줄을 서서 잠든다.
+            assertThat(pool.getPendingThreads()).isEqualTo(size);
+            for (Connection con : held) {
+                con.close();
+            }
+
+            for (Future<Long> wait : waits) {
+                // 시간 초과(3초)까지 가지 않고 바로 깨어난다.
+                assertThat(Duration.ofNanos(wait.get())).isLessThan(Duration.ofSeconds(1));
+            }
+        } finally {
+            executor.shutdown();
+            pool.close();
+        }
+    }
+
+    // 기다리는 스레드가 커넥션보다 훨씬 많아도 아무도 시간 초과가 나지 않는다.
+    @Test
+    void manyWaiters() throws Exception {
+        LockFreeConnectionPool pool = new LockFreeConnectionPool(URL, USERNAME, PASSWORD, 2,
+                Duration.ofSeconds(3), Duration.ofMillis(500));
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        try (Connection con = pool.getConnection()) {
+                            Thread.sleep(2); // 커넥션을 잡고 있는 동안 다른 스레드는 줄을 선다.
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(); // SQLTransientConnectionException 이면 여기서 실패한다.
+            }
+            assertThat(pool.getPendingThreads()).isZero();
+        } finally {
+            executor.shutdown();
+            pool.close();
+        }
+    }
+}
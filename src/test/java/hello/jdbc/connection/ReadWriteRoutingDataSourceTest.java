@@ -0,0 +1,172 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static hello.jdbc.connection.ConnectionConst.PASSWORD;
+import static hello.jdbc.connection.ConnectionConst.USERNAME;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 읽기/쓰기 분리 - 메모리 H2 DB 두 개를 primary, replica 로 쓴다.
+ * 복제는 하지 않는다. 같은 회원을 잔액만 다르게 넣어 두고 어느 쪽에서 읽었는지 확인한다.
+ */
+@Slf4j
+@SpringBootTest
+class ReadWriteRoutingDataSourceTest {
+
+    static final DataSource PRIMARY = new DriverManagerDataSource("jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1", USERNAME, PASSWORD);
+    static final DataSource REPLICA = new DriverManagerDataSource("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1", USERNAME, PASSWORD);
+    static final AtomicReference<Duration> REPLICA_LAG = new AtomicReference<>(Duration.ZERO);
+
+    public static final String MEMBER_A = "memberA";
+
+    @Autowired
+    ReadWriteRoutingDataSource dataSource;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberServiceV4 memberService;
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        ReadWriteRoutingDataSource dataSource() {
+            return new ReadWriteRoutingDataSource(PRIMARY, REPLICA, Duration.ofMillis(200), REPLICA_LAG::get);
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(dataSource());
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource());
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+
+    @BeforeEach
+    void beforeEach() throws InterruptedException {
+        reset(PRIMARY, 1000);
+        reset(REPLICA, 2000);
+        REPLICA_LAG.set(Duration.ZERO);
+        Thread.sleep(200); // 이전 테스트의 쓰기가 maxLag 밖으로 지나가도록
+    }
+
+    @Test
+    void readsGoToReplica() {
+        // 트랜잭션 없는 조회
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(2000);
+        // 읽기 전용 트랜잭션
+        assertThat(memberService.findMember(MEMBER_A).getMoney()).isEqualTo(2000);
+    }
+
+    @Test
+    void writesGoToPrimary() throws InterruptedException {
+        memberRepository.save(new Member("memberB", 10000));
+        memberService.accountTransferAtomic(MEMBER_A, "memberB", 500);
+
+        assertThat(money(PRIMARY, MEMBER_A)).isEqualTo(500);
+        assertThat(money(PRIMARY, "memberB")).isEqualTo(10500);
+        assertThat(money(REPLICA, MEMBER_A)).isEqualTo(2000);
+
+        // 방금 쓴 스레드는 maxLag 동안 primary 에서 읽는다.
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(500);
+        Thread.sleep(250);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(2000);
+    }
+
+    // 줄바꿈, 탭으로 띄운 for update 도 primary 로 간다.
+    @Test
+    void forUpdateWithWhitespace() throws SQLException {
+        long primaryBefore = dataSource.getPrimaryCount();
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("select money from member where member_id = ?\nFOR\tUPDATE")) {
+            pstmt.setString(1, MEMBER_A);
+            pstmt.executeQuery().close();
+        }
+        assertThat(dataSource.getPrimaryCount() - primaryBefore).isEqualTo(1);
+    }
+
+    // sql 없이 primary 를 쓴 것(메타데이터 조회)은 쓰기로 보지 않는다. 바로 다음 읽기도 replica 로 간다.
+    @Test
+    void metadataIsNotWrite() throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            log.info("database = {}", con.getMetaData().getDatabaseProductName());
+        }
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(2000);
+    }
+
+    // replica 가 maxLag 보다 뒤처지면 읽기도 primary 로 간다.
+    @Test
+    void lagFallback() {
+        REPLICA_LAG.set(Duration.ofSeconds(1));
+        assertThat(memberService.findMember(MEMBER_A).getMoney()).isEqualTo(1000);
+        REPLICA_LAG.set(Duration.ofMillis(100));
+        assertThat(memberService.findMember(MEMBER_A).getMoney()).isEqualTo(2000);
+    }
+
+    // 조회 9번, 이체 1번 비율일 때 primary 가 받는 커넥션 수 - 조회는 다른 사용자(스레드)가 한다.
+    @Test
+    void loadOffPrimary() throws Exception {
+        memberRepository.save(new Member("memberB", 10000));
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        long primaryBefore = dataSource.getPrimaryCount();
+        long replicaBefore = dataSource.getReplicaCount();
+        try {
+            for (int i = 0; i < 100; i++) {
+                if (i % 10 == 0) {
+                    memberService.accountTransferAtomic(MEMBER_A, "memberB", 1);
+                } else {
+                    reader.submit(() -> memberService.findMember(MEMBER_A)).get();
+                }
+            }
+        } finally {
+            reader.shutdown();
+        }
+        long primary = dataSource.getPrimaryCount() - primaryBefore;
+        long replica = dataSource.getReplicaCount() - replicaBefore;
+        log.info("primary={}, replica={}", primary, replica);
+        assertThat(primary).isEqualTo(10);
+        assertThat(replica).isEqualTo(90);
+    }
+
+    private static void reset(DataSource dataSource, int money) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("create table if not exists member (member_id varchar(10), money integer not null default 0, version bigint not null default 0, primary key (member_id))");
+        template.update("delete from member");
+        template.update("insert into member(member_id, money) values (?, ?)", MEMBER_A, money);
+    }
+
+    private static int money(DataSource dataSource, String memberId) {
+        return new JdbcTemplate(dataSource).queryForObject("select money from member where member_id = ?", Integer.class, memberId);
+    }
+}
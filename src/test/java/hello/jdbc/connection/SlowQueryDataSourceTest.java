@@ -0,0 +1,199 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 느린 쿼리 로그 - 실행 계획, 파라미터 가리기, 락 대기, 파일 굴리기, 총 시간 순위
+ */
+@Slf4j
+class SlowQueryDataSourceTest {
+
+    public static final String MEMBER_A = "slowA";
+
+    @TempDir
+    Path dir;
+
+    DriverManagerDataSource target = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+    SlowQueryDataSource dataSource;
+
+    @AfterEach
+    void afterEach() throws InterruptedException {
+        new MemberRepositoryV4_2(target).delete(MEMBER_A);
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void planAndRedactedParameters() throws Exception {
+        Path logFile = dir.resolve("slow-query.log");
+        dataSource = new SlowQueryDataSource(target, Duration.ZERO, logFile); // 모든 실행을 남긴다.
+        MemberRepositoryV4_2 repository = new MemberRepositoryV4_2(dataSource);
+
+        repository.save(new Member(MEMBER_A, 12345));
+        repository.findById(MEMBER_A);
+        assertThat(dataSource.flush(Duration.ofSeconds(5))).isTrue();
+
+        String written = Files.readString(logFile, StandardCharsets.UTF_8);
+        log.info("slow query log\n{}", written);
+        assertThat(written).contains("sql: select * from member where member_id = ?");
+        assertThat(written).contains("params: [String]", "params: [String, Integer]");
+        // 기본 키 인덱스로 찾는 계획
+        assertThat(written).contains("plan: ").contains("PRIMARY_KEY");
+        // 값은 남기지 않는다.
+        assertThat(written).doesNotContain(MEMBER_A, "12345");
+        assertThat(dataSource.getExplainFailureCount()).isZero();
+    }
+
+    // EXPLAIN 이 실패해도 예외 메시지(SQL 과 값)는 남기지 않는다.
+    @Test
+    void explainFailure() throws Exception {
+        Path logFile = dir.resolve("slow-query.log");
+        dataSource = new SlowQueryDataSource(target, Duration.ZERO, logFile);
+
+        // 임시 테이블은 이 커넥션에서만 보인다. 따로 얻은 커넥션의 EXPLAIN 은 테이블이 없어서 실패한다.
+        try (Connection con = dataSource.getConnection()) {
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute("create local temporary table slow_tmp(name varchar(20))");
+            }
+            try (PreparedStatement pstmt = con.prepareStatement("select * from slow_tmp where name = ?")) {
+                pstmt.setString(1, "secret-1");
+                pstmt.executeQuery().close();
+            }
+        }
+        assertThat(dataSource.flush(Duration.ofSeconds(5))).isTrue();
+
+        String written = Files.readString(logFile, StandardCharsets.UTF_8);
+        log.info("slow query log\n{}", written);
+        assertThat(dataSource.getExplainFailureCount()).isEqualTo(1);
+        assertThat(written).contains("(explain failed: sqlState=");
+        assertThat(written).doesNotContain("secret");
+    }
+
+    // 값을 SQL 에 직접 넣은 실행은 EXPLAIN 하지 않는다. (H2 의 계획에는 리터럴이 그대로 나온다.)
+    // 문자열, 숫자 리터럴은 로그와 누적 값 모두에서 가린다.
+    @Test
+    void literalsInSql() throws Exception {
+        Path logFile = dir.resolve("slow-query.log");
+        dataSource = new SlowQueryDataSource(target, Duration.ZERO, logFile);
+        new MemberRepositoryV4_2(target).save(new Member(MEMBER_A, 12345));
+
+        try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+            stmt.executeQuery("select * from member where member_id = '" + MEMBER_A + "' and money = 12345").close();
+            stmt.executeQuery("select * from member where member_id = 'other' and money = 5000").close();
+        }
+        // 상수를 적은 PreparedStatement 는 EXPLAIN 이 성공한다. 계획에 다시 나오는 상수도 가린다.
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("select * from member where member_id = ? and money >= 12345")) {
+            pstmt.setString(1, MEMBER_A);
+            pstmt.executeQuery().close();
+        }
+        assertThat(dataSource.flush(Duration.ofSeconds(5))).isTrue();
+
+        String written = Files.readString(logFile, StandardCharsets.UTF_8);
+        log.info("slow query log\n{}", written);
+        assertThat(written).contains("sql: select * from member where member_id = '***' and money = ***");
+        assertThat(written).contains("plan: (not explained: values in sql)");
+        assertThat(written).contains("sql: select * from member where member_id = ? and money >= ***");
+        assertThat(written).contains("PRIMARY_KEY");
+        assertThat(written).doesNotContain(MEMBER_A, "12345", "other", "5000");
+        assertThat(dataSource.getExplainFailureCount()).isZero();
+        // 값만 다른 두 SQL 은 하나로 모인다.
+        assertThat(dataSource.topByTotalTime())
+                .filteredOn(stats -> stats.getSql().equals("select * from member where member_id = '***' and money = ***"))
+                .singleElement()
+                .satisfies(stats -> assertThat(stats.getCount()).isEqualTo(2));
+    }
+
+    @Test
+    void lockWait() throws Exception {
+        dataSource = new SlowQueryDataSource(target, Duration.ofMillis(100), dir.resolve("slow-query.log"));
+        MemberRepositoryV4_2 repository = new MemberRepositoryV4_2(dataSource);
+        repository.save(new Member(MEMBER_A, 10000));
+
+        // 다른 트랜잭션이 행 락을 잡고 있는 동안 변경한다.
+        try (Connection con = target.getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement pstmt = con.prepareStatement("update member set money=?, version=version+1 where member_id=?")) {
+                pstmt.setInt(1, 20000);
+                pstmt.setString(2, MEMBER_A);
+                pstmt.executeUpdate();
+            }
+            CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> repository.update(MEMBER_A, 30000));
+            TimeUnit.MILLISECONDS.sleep(300);
+            con.commit();
+            blocked.get(5, TimeUnit.SECONDS);
+        }
+        repository.findById(MEMBER_A);
+        assertThat(dataSource.flush(Duration.ofSeconds(5))).isTrue();
+
+        assertThat(dataSource.getSlowCount()).isEqualTo(1);
+        String written = Files.readString(dir.resolve("slow-query.log"), StandardCharsets.UTF_8);
+        assertThat(written).contains("sql: update member set money=?, version=version+*** where member_id=?"); // 숫자 상수도 가린다.
+        assertThat(written).doesNotContain("select * from member");
+
+        // 락을 기다린 update 가 총 시간 1 등
+        StatementStats top = dataSource.topByTotalTime().get(0);
+        assertThat(top.getSql()).isEqualTo("update member set money=?, version=version+*** where member_id=?");
+        assertThat(top.getSlowCount()).isEqualTo(1);
+        assertThat(top.getMaxNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void topByTotalTime() throws Exception {
+        dataSource = new SlowQueryDataSource(target, Duration.ofSeconds(10), dir.resolve("slow-query.log"), 1024, 1, 2);
+        MemberRepositoryV4_2 repository = new MemberRepositoryV4_2(dataSource);
+        repository.save(new Member(MEMBER_A, 10000));
+        for (int i = 0; i < 50; i++) {
+            repository.findById(MEMBER_A);
+        }
+        repository.update(MEMBER_A, 20000);
+
+        List<StatementStats> top = dataSource.topByTotalTime();
+        log.info("top = {}", top);
+        assertThat(top).hasSize(2);
+        assertThat(top.get(0).getTotalNanos()).isGreaterThanOrEqualTo(top.get(1).getTotalNanos());
+        assertThat(top).filteredOn(stats -> stats.getSql().startsWith("select"))
+                .singleElement()
+                .satisfies(stats -> assertThat(stats.getCount()).isEqualTo(50));
+        assertThat(dataSource.getSlowCount()).isZero();
+    }
+
+    @Test
+    void rolling() throws Exception {
+        Path logFile = dir.resolve("slow-query.log");
+        dataSource = new SlowQueryDataSource(target, Duration.ZERO, logFile, 300, 2, 20);
+        MemberRepositoryV4_2 repository = new MemberRepositoryV4_2(dataSource);
+        repository.save(new Member(MEMBER_A, 10000));
+        for (int i = 0; i < 20; i++) {
+            repository.findById(MEMBER_A);
+        }
+        assertThat(dataSource.flush(Duration.ofSeconds(5))).isTrue();
+
+        // 지금 파일 + 지난 파일 2 개
+        assertThat(logFile).exists();
+        assertThat(dir.resolve("slow-query.log.1")).exists();
+        assertThat(dir.resolve("slow-query.log.2")).exists();
+        assertThat(dir.resolve("slow-query.log.3")).doesNotExist();
+    }
+}
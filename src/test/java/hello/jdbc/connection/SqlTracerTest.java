@@ -0,0 +1,146 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SQL 추적 - 표본 추출과 링 버퍼
+ */
+class SqlTracerTest {
+
+    @AfterEach
+    void afterEach() {
+        SqlTracer.shared().setMode(SqlTracer.Mode.SAMPLED);
+    }
+
+    @Test
+    void full() {
+        SqlTracer tracer = new SqlTracer(16);
+        tracer.setMode(SqlTracer.Mode.FULL);
+
+        tracer.acquired(System.nanoTime());
+        tracer.executed("select 1", 0, -1);
+        tracer.begin();
+        tracer.executed("update member set money=? where member_id=?", 2, 1);
+        tracer.executed("select 2", 0, -1); // acquired() 없이 부르면 기록하지 않는다.
+
+        List<SqlTrace> traces = tracer.dump();
+        assertThat(traces).extracting(SqlTrace::getSql).containsExactly("select 1", "update member set money=? where member_id=?");
+        assertThat(traces.get(1).getBindCount()).isEqualTo(2);
+        assertThat(traces.get(1).getRows()).isEqualTo(1);
+        assertThat(traces.get(1).getAcquireNanos()).isZero();
+        assertThat(traces.get(0).getThreadName()).isEqualTo(Thread.currentThread().getName());
+    }
+
+    @Test
+    void sampledAndOff() {
+        SqlTracer tracer = new SqlTracer(16);
+        tracer.setMode(SqlTracer.Mode.SAMPLED);
+        tracer.setSampleRate(10);
+        for (int i = 0; i < 10000; i++) {
+            tracer.acquired(System.nanoTime());
+            tracer.executed("select 1", 0, -1);
+        }
+        // 10 번에 한 번 정도
+        assertThat(tracer.getRecordedCount()).isBetween(500L, 2000L);
+
+        tracer.setMode(SqlTracer.Mode.OFF);
+        long recorded = tracer.getRecordedCount();
+        for (int i = 0; i < 1000; i++) {
+            tracer.acquired(System.nanoTime());
+            tracer.executed("select 1", 0, -1);
+        }
+        assertThat(tracer.getRecordedCount()).isEqualTo(recorded);
+    }
+
+    // 시스템 프로퍼티를 잘못 적어도 클래스 초기화가 실패하지 않는다.
+    @Test
+    void invalidProperties() {
+        assertThat(SqlTracer.parseMode("Full")).isEqualTo(SqlTracer.Mode.FULL);
+        assertThat(SqlTracer.parseMode("ful")).isEqualTo(SqlTracer.Mode.SAMPLED);
+        assertThat(SqlTracer.parseSampleRate(0)).isEqualTo(1);
+        assertThat(SqlTracer.parseSampleRate(100)).isEqualTo(100);
+    }
+
+    @Test
+    void ringWrapsAround() {
+        SqlTracer tracer = new SqlTracer(10); // 16 칸으로 올린다.
+        tracer.setMode(SqlTracer.Mode.FULL);
+        for (int i = 0; i < 40; i++) {
+            tracer.begin();
+            tracer.executed("select " + i, 0, -1);
+        }
+
+        List<SqlTrace> traces = tracer.dump();
+        assertThat(tracer.getRecordedCount()).isEqualTo(40);
+        assertThat(traces).hasSize(16);
+        // 오래된 것부터, 밀려난 기록 없이 마지막 16 건
+        assertThat(traces.get(0).getSequence()).isEqualTo(24);
+        assertThat(traces.get(15).getSql()).isEqualTo("select 39");
+    }
+
+    @Test
+    void concurrentWritersAndDump() throws Exception {
+        SqlTracer tracer = new SqlTracer(8); // 칸이 적어서 쓰기끼리 같은 칸에서 자주 만난다.
+        tracer.setMode(SqlTracer.Mode.FULL);
+        tracer.setLogPerSecond(0);
+        int threads = 4;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int bindCount = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    tracer.begin();
+                    tracer.executed("sql" + bindCount, bindCount, i);
+                }
+            }));
+        }
+        // 쓰는 중에 읽어도 한 기록의 값이 섞이지 않는다. (sql 과 bindCount 는 같은 스레드가 쓴 값이다.)
+        while (!futures.stream().allMatch(Future::isDone)) {
+            for (SqlTrace trace : tracer.dump()) {
+                assertThat(trace.getSql()).isEqualTo("sql" + trace.getBindCount());
+            }
+        }
+        executor.shutdown();
+
+        assertThat(tracer.getRecordedCount()).isEqualTo(threads * 20000);
+        // 칸마다 가장 새 기록이 남는다. 늦게 끝난 옛 기록이 칸을 가리지 않는다.
+        List<SqlTrace> last = tracer.dump();
+        assertThat(last).hasSize(8);
+        assertThat(last.get(0).getSequence()).isEqualTo(threads * 20000 - 8);
+    }
+
+    @Test
+    void repository() {
+        SqlTracer tracer = SqlTracer.shared();
+        tracer.setMode(SqlTracer.Mode.FULL);
+        MemberRepositoryV4_2 repository = new MemberRepositoryV4_2(new DriverManagerDataSource(URL, USERNAME, PASSWORD));
+        long before = tracer.getRecordedCount();
+
+        repository.save(new Member("traceA", 10000));
+        repository.update("traceA", 20000);
+        repository.findById("traceA");
+        repository.delete("traceA");
+
+        List<SqlTrace> traces = tracer.dump();
+        assertThat(tracer.getRecordedCount() - before).isEqualTo(4);
+        assertThat(traces.subList(traces.size() - 4, traces.size()))
+                .extracting(SqlTrace::getRows)
+                .containsExactly(1, 1, -1, 1);
+        assertThat(traces.get(traces.size() - 1).getAcquireNanos()).isPositive();
+    }
+}
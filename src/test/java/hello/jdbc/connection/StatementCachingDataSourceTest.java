@@ -0,0 +1,113 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class StatementCachingDataSourceTest {
+
+    StatementCachingDataSource cachingDataSource;
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        // 커넥션 풀 아래에 캐시를 둔다. - 풀에 있는 물리 커넥션마다 캐시가 붙는다.
+        cachingDataSource = new StatementCachingDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD), 2);
+        dataSource = new HikariDataSource();
+        dataSource.setDataSource(cachingDataSource);
+        dataSource.setMaximumPoolSize(1); // 같은 커넥션이 재사용되도록
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.close();
+    }
+
+    // 리포지토리 코드를 바꾸지 않아도 두 번째 호출부터 캐시된 statement 를 쓴다.
+    @Test
+    void repositoryUsesCache() throws SQLException {
+        MemberRepositoryV4_2 repository = new MemberRepositoryV4_2(dataSource);
+        MemberRepositoryV3 repositoryV3 = new MemberRepositoryV3(dataSource);
+        repository.save(new Member("cacheA", 10000));
+        try {
+            repository.findById("cacheA");
+            repository.findById("cacheA");
+            repositoryV3.findById("cacheA"); // 같은 sql 이면 리포지토리가 달라도 같은 캐시를 쓴다.
+            log.info("hits = {}, misses = {}", cachingDataSource.getHits(), cachingDataSource.getMisses());
+            assertThat(cachingDataSource.getHits()).isEqualTo(2);
+        } finally {
+            repository.delete("cacheA");
+        }
+    }
+
+    // 가장 오래 안 쓴 statement 가 닫히고, 커넥션이 닫히면 캐시된 statement 도 닫힌다.
+    @Test
+    void evictionAndClose() throws SQLException {
+        Connection con = cachingDataSource.getConnection();
+        PreparedStatement first = con.prepareStatement("select 1");
+        PreparedStatement physical = first.unwrap(PreparedStatement.class);
+        first.close();
+        assertThat(first.isClosed()).isTrue();
+        assertThat(physical.isClosed()).isFalse(); // 캐시로 돌아갔다.
+
+        con.prepareStatement("select 2").close();
+        con.prepareStatement("select 3").close(); // 캐시 크기 2 - "select 1" 이 밀려난다.
+        assertThat(physical.isClosed()).isTrue();
+
+        PreparedStatement third = con.prepareStatement("select 3");
+        PreparedStatement cached = third.unwrap(PreparedStatement.class);
+        third.close();
+        con.close();
+        assertThat(cached.isClosed()).isTrue();
+    }
+
+    // 반납하면 열린 ResultSet 을 닫고 바꾼 설정을 되돌린다. 다음 사람은 앞사람의 maxRows 를 물려받지 않는다.
+    @Test
+    void resetOnReturn() throws SQLException {
+        String sql = "select x from system_range(1, 10)";
+        Connection con = cachingDataSource.getConnection();
+        PreparedStatement first = con.prepareStatement(sql);
+        PreparedStatement physical = first.unwrap(PreparedStatement.class);
+        int fetchSize = first.getFetchSize();
+        first.setFetchSize(3);
+        first.setMaxRows(5);
+        first.setQueryTimeout(5);
+        ResultSet rs = first.executeQuery();
+        first.close();
+        assertThat(rs.isClosed()).isTrue();
+
+        PreparedStatement second = con.prepareStatement(sql);
+        assertThat(second.unwrap(PreparedStatement.class)).isSameAs(physical); // 캐시에서 꺼냈다.
+        assertThat(second.getMaxRows()).isZero();
+        assertThat(second.getFetchSize()).isEqualTo(fetchSize);
+        assertThat(second.getQueryTimeout()).isZero();
+        int rows = 0;
+        try (ResultSet all = second.executeQuery()) {
+            while (all.next()) {
+                rows++;
+            }
+        }
+        assertThat(rows).isEqualTo(10);
+
+        // 되돌릴 수 없는 설정을 바꾸면 캐시하지 않고 닫는다.
+        second.setPoolable(false);
+        second.close();
+        assertThat(physical.isClosed()).isTrue();
+        con.close();
+    }
+}
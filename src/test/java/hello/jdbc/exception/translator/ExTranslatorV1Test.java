@@ -1,20 +1,23 @@
 package hello.jdbc.exception.translator;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.repository.ExceptionTranslatorRegistry;
+import hello.jdbc.repository.MemberIdAllocator;
 import hello.jdbc.repository.ex.MyDbException;
 import hello.jdbc.repository.ex.MyDuplicateKeyException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.Random;
 
 import static hello.jdbc.connection.ConnectionConst.*;
 
@@ -32,7 +35,7 @@ public class ExTranslatorV1Test {
     void init() {
         DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
         repository = new Repository(dataSource);
-        service = new Service(repository);
+        service = new Service(repository, new MemberIdAllocator(dataSource, "i", 100));
     }
 
     @Test
@@ -46,6 +49,7 @@ public class ExTranslatorV1Test {
     @RequiredArgsConstructor
     static class Service {
         private final Repository repository;
+        private final MemberIdAllocator idAllocator;
 
         // 회원가입 로직
         public void create(String memberId) {
@@ -66,15 +70,22 @@ public class ExTranslatorV1Test {
         }
 
         // 키 생성
+        // memberId + 임의의 숫자는 또 겹칠 수 있다. 발급기에서 받은 ID 는 겹치지 않아서 다시 저장하면 성공한다.
         private String generateNewId(String memberId) {
-            return memberId + new Random().nextInt(10000);
+            return idAllocator.nextMemberId();
         }
     }
 
     // 1. repository 만들기
-    @RequiredArgsConstructor
     static class Repository {
         private final DataSource dataSource;
+        private final SQLExceptionTranslator exTranslator;
+
+        Repository(DataSource dataSource) {
+            this.dataSource = dataSource;
+            // DB 마다 다른 에러 코드는 레지스트리가 알고 있다.
+            this.exTranslator = ExceptionTranslatorRegistry.shared().translator(dataSource);
+        }
 
         public Member save(Member member) {
             String sql = "insert into member(member_id, money) values(?,?)";
@@ -92,8 +103,8 @@ public class ExTranslatorV1Test {
                 /**
                  * 이제 더이상 SQLException을 밖에 던지지 않을거다.
                  */
-                // h2 db 인 경우
-                if (e.getErrorCode() == 23505) { // 키 중복인 경우
+                // h2 db 인 경우 23505 - 레지스트리의 키 중복 코드로 확인한다. (다른 DB 로 바꿔도 그대로 동작)
+                if (exTranslator.translate("save", sql, e) instanceof DuplicateKeyException) { // 키 중복인 경우
                     throw new MyDuplicateKeyException(e); // 이렇게 하면 서비스에서 잡아서 복구할 수 있다.
                 }
                 throw new MyDbException(e); // SQLException 예외 제외하고 나머지 예외의 경우
@@ -0,0 +1,143 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class CachingMemberRepositoryTest {
+
+    public static final String MEMBER_A = "cacheA";
+    public static final String MEMBER_B = "cacheB";
+
+    HikariDataSource dataSource;
+    MemberRepositoryV5 target;
+    CachingMemberRepository repository;
+    TransactionTemplate txTemplate;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        target = new MemberRepositoryV5(dataSource);
+        repository = new CachingMemberRepository(target, 100, Duration.ofMinutes(1));
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        repository.save(new Member(MEMBER_A, 10000));
+        repository.save(new Member(MEMBER_B, 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        target.delete(MEMBER_A);
+        target.delete(MEMBER_B);
+        dataSource.close();
+    }
+
+    @Test
+    void readThrough() {
+        repository.findById(MEMBER_A); // miss - DB 조회
+        repository.findById(MEMBER_A); // hit
+        Member member = repository.findById(MEMBER_A); // hit
+
+        assertThat(member.getMoney()).isEqualTo(10000);
+        assertThat(repository.getMissCount()).isEqualTo(1);
+        assertThat(repository.getHitCount()).isEqualTo(2);
+
+        // 캐시 밖에서 돌려준 객체를 바꿔도 캐시 안의 값은 그대로다.
+        member.setMoney(0);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void keepVersion() {
+        // version 까지 채워서 돌려주는 리포지토리를 감싸도 캐시가 version 을 잃지 않는다.
+        MemberRepositoryV5 versioned = new MemberRepositoryV5(dataSource) {
+            @Override
+            public Member findById(String memberId) {
+                return findByIdWithVersion(memberId);
+            }
+        };
+        CachingMemberRepository cached = new CachingMemberRepository(versioned, 100, Duration.ofMinutes(1));
+        Long version = versioned.findByIdWithVersion(MEMBER_A).getVersion();
+
+        cached.findById(MEMBER_A); // miss
+        Member member = cached.findById(MEMBER_A); // hit
+        assertThat(member.getVersion()).isEqualTo(version);
+        assertThat(versioned.update(MEMBER_A, 20000, member.getVersion())).isTrue();
+    }
+
+    @Test
+    void invalidateOnWrite() {
+        repository.findById(MEMBER_A);
+        repository.update(MEMBER_A, 20000);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(20000);
+
+        repository.adjustBalance(MEMBER_A, -5000);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(15000);
+        assertThat(repository.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    void evictAndExpire() {
+        CachingMemberRepository small = new CachingMemberRepository(target, 1, Duration.ofMillis(50));
+        small.findById(MEMBER_A);
+        small.findById(MEMBER_B); // 크기 1 - memberA 를 밀어낸다.
+        assertThat(small.getEvictionCount()).isEqualTo(1);
+        assertThat(small.size()).isEqualTo(1);
+
+        sleep(100); // ttl 이 지나면 다시 DB 에서 읽는다.
+        small.findById(MEMBER_B);
+        assertThat(small.getHitCount()).isEqualTo(0);
+        assertThat(small.getMissCount()).isEqualTo(3);
+    }
+
+    // 트랜잭션 안에서 바꾼 값은 같은 트랜잭션에서만 보이고, 롤백되면 캐시에 남지 않는다.
+    @Test
+    void rollbackDoesNotLeak() {
+        repository.findById(MEMBER_A);
+
+        txTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 0);
+            assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(0); // 자기 변경은 보인다.
+            status.setRollbackOnly();
+        });
+
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+    // 커밋되기 전까지는 캐시에 이전 값이 남아 있고, 커밋된 뒤에 지워진다.
+    @Test
+    void invalidateAfterCommit() {
+        repository.findById(MEMBER_A);
+
+        txTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 0);
+            assertThat(repository.size()).isEqualTo(1); // 아직 커밋 전이라 지우지 않았다.
+        });
+
+        assertThat(repository.size()).isEqualTo(0);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(0);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 예외 변환기 레지스트리 - 스프링 변환기와 같은 예외로 바꾸고, 변환할 때 커넥션을 빌리지 않는다.
+ */
+@Slf4j
+class ExceptionTranslatorRegistryTest {
+
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = dataSource();
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.close();
+    }
+
+    @Test
+    void sameAsSpringTranslator() {
+        SQLExceptionTranslator translator = ExceptionTranslatorRegistry.shared().translator(dataSource);
+        SQLErrorCodeSQLExceptionTranslator springTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+
+        BatchUpdateException batch = new BatchUpdateException("batch", new int[0]);
+        batch.setNextException(new SQLException("dup", "23505", 23505));
+        List<SQLException> exceptions = List.of(
+                new SQLException("dup", "23505", 23505), // 키 중복
+                new SQLException("bad", "42S22", 42122), // 문법 오류
+                new SQLException("lock", "HYT00", 50200), // 락 타임아웃
+                new SQLException("too long", "22001", 22001), // 무결성
+                new SQLException("closed", "90121", 90121), // 접근 실패
+                new SQLTransactionRollbackException("deadlock", "40001", 40001), // 표에 없다 - 하위 타입으로 변환
+                new SQLException("unknown", "S1000", 99999), // 표에 없다 - SQLState 로 변환
+                batch); // 안쪽 예외의 코드를 쓴다.
+
+        for (SQLException e : exceptions) {
+            DataAccessException expected = springTranslator.translate("task", "sql", e);
+            DataAccessException actual = translator.translate("task", "sql", e);
+            log.info("code = {}, translated = {}", e.getErrorCode(), actual.getClass().getSimpleName());
+            assertThat(actual).isExactlyInstanceOf(expected.getClass());
+            assertThat(actual.getMessage()).isEqualTo(expected.getMessage());
+        }
+    }
+
+    @Test
+    void shared() {
+        SQLExceptionTranslator translator = ExceptionTranslatorRegistry.shared().translator(dataSource);
+        assertThat(ExceptionTranslatorRegistry.shared().translator(dataSource)).isSameAs(translator);
+
+        // 같은 DB 종류면 다른 DataSource 도 같은 변환기를 쓴다.
+        try (HikariDataSource other = dataSource()) {
+            assertThat(ExceptionTranslatorRegistry.shared().translator(other)).isSameAs(translator);
+        }
+    }
+
+    @Test
+    void exhaustedPool() throws SQLException {
+        SQLExceptionTranslator translator = ExceptionTranslatorRegistry.shared().translator(dataSource);
+        SQLException duplicate = new SQLException("dup", "23505", 23505);
+
+        try (Connection held = dataSource.getConnection()) { // 풀에 남은 커넥션이 없다.
+            long start = System.nanoTime();
+            assertThat(translator.translate("save", null, duplicate)).isInstanceOf(DuplicateKeyException.class);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.info("pre-resolved translate = {}ms", elapsedMillis);
+            assertThat(elapsedMillis).isLessThan(dataSource.getConnectionTimeout());
+        }
+
+        // 스프링 변환기는 이때 커넥션을 기다리다 타임아웃이 나고, DB 종류를 몰라서 키 중복을 구분하지 못한다.
+        try (HikariDataSource other = dataSource(); Connection held = other.getConnection()) {
+            long start = System.nanoTime();
+            DataAccessException result = new SQLErrorCodeSQLExceptionTranslator(other).translate("save", null, duplicate);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.info("lazy translate = {}ms, result = {}", elapsedMillis, result.getClass().getSimpleName());
+            assertThat(elapsedMillis).isGreaterThanOrEqualTo(other.getConnectionTimeout());
+            assertThat(result).isNotInstanceOf(DuplicateKeyException.class);
+        }
+    }
+
+    private static HikariDataSource dataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(1);
+        dataSource.setConnectionTimeout(250);
+        return dataSource;
+    }
+}
@@ -0,0 +1,142 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryMemberRepositoryTest {
+
+    InMemoryMemberRepository repository = new InMemoryMemberRepository();
+
+    @Test
+    void crud() {
+        // save
+        Member member = new Member("memberV0", 10000);
+        repository.save(member);
+        assertThatThrownBy(() -> repository.save(new Member("memberV0", 0)))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        // findById
+        Member findMember = repository.findById(member.getMemberId());
+        assertThat(findMember).isEqualTo(member);
+
+        // update: money: 10000 -> 20000
+        repository.update(member.getMemberId(), 20000);
+        assertThat(repository.findById(member.getMemberId()).getMoney()).isEqualTo(20000);
+
+        // adjustBalance
+        assertThat(repository.adjustBalance(member.getMemberId(), -5000)).isTrue();
+        assertThat(repository.adjustBalance(member.getMemberId(), -20000)).isFalse();
+        assertThat(repository.adjustBalance("none", 1000)).isFalse();
+        assertThat(repository.findById(member.getMemberId()).getMoney()).isEqualTo(15000);
+
+        // delete
+        repository.delete(member.getMemberId());
+        assertThatThrownBy(() -> repository.findById(member.getMemberId()))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void saveDeleteReuse() {
+        // 삭제 표시가 쌓여도 맵이 계속 동작하는지 - 넣고 지우기를 반복한다.
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10000; i++) {
+                repository.save(new Member("r" + i, round));
+            }
+            assertThat(repository.size()).isEqualTo(10000);
+            assertThat(repository.findById("r9999").getMoney()).isEqualTo(round);
+            for (int i = 0; i < 10000; i++) {
+                repository.delete("r" + i);
+            }
+            assertThat(repository.size()).isZero();
+        }
+    }
+
+    @Test
+    void findPage() {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            members.add(new Member("batch" + i, i));
+        }
+        SaveAllResult result = repository.saveAll(members);
+        assertThat(result.getSavedCount()).isEqualTo(130);
+
+        List<String> expected = members.stream().map(Member::getMemberId).sorted().collect(Collectors.toList());
+        List<String> paged = new ArrayList<>();
+        new MemberPageIterator(repository, 50).forEachRemaining(page -> {
+            assertThat(page.size()).isLessThanOrEqualTo(50);
+            page.forEach(member -> paged.add(member.getMemberId()));
+        });
+        assertThat(paged).isEqualTo(expected);
+
+        try (Stream<Member> stream = repository.streamAll()) {
+            assertThat(stream.count()).isEqualTo(130);
+        }
+        assertThat(repository.findAllByIds(List.of("batch1", "batch2", "none"))).containsOnlyKeys("batch1", "batch2");
+    }
+
+    @Test
+    void concurrentAdjust() throws Exception {
+        repository.save(new Member("hot", 0));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        repository.adjustBalance("hot", 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(repository.findById("hot").getMoney()).isEqualTo(80000);
+    }
+
+    // 롤백은 바꾼 만큼만 되돌린다. 그사이 다른 스레드가 커밋한 변경은 남는다.
+    @Test
+    void rollbackKeepsOtherCommits() throws Exception {
+        repository.save(new Member("rollbackA", 10000));
+        repository.save(new Member("rollbackB", 10000));
+        TransactionTemplate txTemplate = new TransactionTemplate(new InMemoryTransactionManager());
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            txTemplate.executeWithoutResult(status -> {
+                repository.adjustBalance("rollbackA", -2000);
+                repository.update("rollbackB", 7000);
+                // 트랜잭션 밖의 다른 스레드가 같은 회원에 500 씩 더하고 바로 반영한다.
+                try {
+                    other.submit(() -> {
+                        repository.adjustBalance("rollbackA", 500);
+                        repository.adjustBalance("rollbackB", 500);
+                    }).get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                status.setRollbackOnly();
+            });
+        } finally {
+            other.shutdown();
+        }
+
+        assertThat(repository.findById("rollbackA").getMoney()).isEqualTo(10500);
+        assertThat(repository.findById("rollbackB").getMoney()).isEqualTo(10500);
+    }
+}
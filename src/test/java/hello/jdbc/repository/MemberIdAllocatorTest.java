@@ -0,0 +1,95 @@
+package hello.jdbc.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static hello.jdbc.connection.ConnectionConst.PASSWORD;
+import static hello.jdbc.connection.ConnectionConst.USERNAME;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 회원 ID 발급기 - 메모리 H2 DB 를 쓴다.
+ * 발급기 두 개가 각자 DataSource 로 같은 시퀀스 테이블을 쓰게 해서 JVM 두 개를 흉내 낸다.
+ */
+class MemberIdAllocatorTest {
+
+    DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:idalloc;DB_CLOSE_DELAY=-1", USERNAME, PASSWORD);
+
+    @BeforeEach
+    void beforeEach() {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        // src/main/resources/db/schema.sql 과 같은 id_sequence 테이블
+        template.execute("drop table if exists id_sequence");
+        template.execute("create table id_sequence (name varchar(10) primary key, next_val bigint not null)");
+    }
+
+    @Test
+    void prefixLength() {
+        // prefix + 36 진수 9 자리가 member_id varchar(10) 에 들어가야 한다.
+        assertThatThrownBy(() -> new MemberIdAllocator(dataSource, "id", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MemberIdAllocator(dataSource, "", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(new MemberIdAllocator(dataSource, "m", 10).nextMemberId()).hasSizeLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void sequential() {
+        MemberIdAllocator allocator = new MemberIdAllocator(dataSource, "m", 10);
+
+        assertThat(allocator.nextId()).isEqualTo(1);
+        assertThat(allocator.nextMemberId()).isEqualTo("m2");
+        for (int i = 0; i < 30; i++) {
+            allocator.nextId();
+        }
+        assertThat(allocator.nextId()).isEqualTo(33);
+        assertThat(allocator.getReservedBlockCount()).isEqualTo(4);
+
+        // 새 발급기는 앞에서 예약한 블록 다음 번호부터 준다.
+        assertThat(new MemberIdAllocator(dataSource, "m", 10).nextId()).isEqualTo(41);
+        // prefix 마다 번호가 따로다.
+        assertThat(new MemberIdAllocator(dataSource, "x", 10).nextId()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrent() throws Exception {
+        List<MemberIdAllocator> allocators = List.of(
+                new MemberIdAllocator(dataSource, "m", 64),
+                new MemberIdAllocator(new DriverManagerDataSource("jdbc:h2:mem:idalloc;DB_CLOSE_DELAY=-1", USERNAME, PASSWORD), "m", 64));
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int perThread = 5000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            MemberIdAllocator allocator = allocators.get(t % 2);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(allocator.nextMemberId());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // 겹친 ID 가 없다.
+        assertThat(ids).hasSize(threads * perThread);
+        long blocks = allocators.get(0).getReservedBlockCount() + allocators.get(1).getReservedBlockCount();
+        assertThat(blocks).isBetween((long) threads * perThread / 64, (long) threads * perThread / 64 + 2);
+    }
+}
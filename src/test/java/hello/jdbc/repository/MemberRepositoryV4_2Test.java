@@ -0,0 +1,156 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * MemberRepositoryV4_2 테스트
+ * 스프링 예외 추상화 적용 - SQLExceptionTranslator
+ */
+@Slf4j
+class MemberRepositoryV4_2Test {
+
+    MemberRepositoryV4_2 repository;
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        repository = new MemberRepositoryV4_2(dataSource);
+    }
+
+    @AfterEach
+    void afterEach() {
+        for (int i = 0; i < 130; i++) {
+            repository.delete("batch" + i);
+        }
+        dataSource.close();
+    }
+
+    // 대량 저장 - 이미 있는 회원은 키 중복으로 결과에 담기고 나머지는 저장된다.
+    @Test
+    void saveAll() {
+        repository.save(new Member("batch2", 0));
+        repository.setBatchSize(2); // 배치 여러 개로 나눠서 실행되는지 확인
+
+        List<Member> members = List.of(
+                new Member("batch0", 1000),
+                new Member("batch1", 1000),
+                new Member("batch2", 1000),
+                new Member("batch3", 1000),
+                new Member("batch4", 1000));
+        SaveAllResult result = repository.saveAll(members);
+        log.info("result = {}", result);
+
+        assertThat(result.getSavedCount()).isEqualTo(4);
+        assertThat(result.getDuplicateIds()).containsExactly("batch2");
+        assertThat(repository.findById("batch4").getMoney()).isEqualTo(1000);
+        assertThat(repository.findById("batch2").getMoney()).isEqualTo(0); // 기존 값 그대로
+    }
+
+    // 대량 저장 - 키 중복과 다른 실패가 섞이면 키 중복으로 세지 않고 예외를 던진다.
+    @Test
+    void saveAllMixedFailure() {
+        repository.save(new Member("batch1", 0));
+
+        List<Member> members = List.of(
+                new Member("batch0", 1000),
+                new Member("batch1", 1000), // 키 중복
+                new Member("batch2-too-long", 1000)); // member_id varchar(10) 보다 길다.
+
+        assertThatThrownBy(() -> repository.saveAll(members))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .isNotInstanceOf(DuplicateKeyException.class);
+    }
+
+    // 여러 회원 조회 - 128개를 넘으면 IN 절 쿼리 여러 번으로 나눠서 조회한다.
+    @Test
+    void findAllByIds() {
+        List<Member> members = new ArrayList<>();
+        List<String> memberIds = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            members.add(new Member("batch" + i, i));
+            memberIds.add("batch" + i);
+        }
+        repository.saveAll(members);
+        memberIds.add("nobody"); // 없는 회원은 결과에서 빠진다.
+
+        Map<String, Member> result = repository.findAllByIds(memberIds);
+
+        assertThat(result).hasSize(130);
+        assertThat(result.get("batch129").getMoney()).isEqualTo(129);
+        assertThat(result).doesNotContainKey("nobody");
+    }
+
+    // 커서 조회 - 스트림을 닫으면 커넥션이 풀에 반납된다.
+    @Test
+    void streamAll() {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            members.add(new Member("batch" + i, i));
+        }
+        repository.saveAll(members);
+        repository.setFetchSize(16);
+
+        try (Stream<Member> stream = repository.streamAll(member -> member.getMemberId().startsWith("batch"))) {
+            Map<String, Integer> result = stream.collect(Collectors.toMap(Member::getMemberId, Member::getMoney));
+            assertThat(result).hasSize(130);
+            assertThat(result.get("batch77")).isEqualTo(77);
+            assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isEqualTo(1); // 스트림이 커넥션을 잡고 있다.
+        }
+        assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isEqualTo(0);
+    }
+
+    // 페이지 조회 - 마지막으로 본 id 다음부터 member_id 순서로 가져온다.
+    @Test
+    void findPage() {
+        List<Member> members = new ArrayList<>();
+        List<String> memberIds = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            members.add(new Member("batch" + i, i));
+            memberIds.add("batch" + i);
+        }
+        repository.saveAll(members);
+        Collections.sort(memberIds);
+
+        List<Member> page = repository.findPage("batch", 10);
+        assertThat(page).extracting(Member::getMemberId).containsExactlyElementsOf(memberIds.subList(0, 10));
+        List<Member> nextPage = repository.findPage(page.get(9).getMemberId(), 10);
+        assertThat(nextPage).extracting(Member::getMemberId).containsExactlyElementsOf(memberIds.subList(10, 20));
+
+        // 페이지 순회 - 전체 테이블을 16건씩 읽는다.
+        List<String> iterated = new ArrayList<>();
+        for (MemberPageIterator pages = new MemberPageIterator(repository, 16); pages.hasNext(); ) {
+            for (Member member : pages.next()) {
+                if (member.getMemberId().startsWith("batch")) {
+                    iterated.add(member.getMemberId());
+                }
+            }
+        }
+        assertThat(iterated).isEqualTo(memberIds);
+
+        // limit 0 은 빈 페이지가 되어 순회가 끝난 것처럼 보인다. 미리 막는다.
+        assertThatThrownBy(() -> repository.findPage(null, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,170 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * MemberRepositoryV5 테스트
+ * JdbcTemplate 사용
+ */
+@Slf4j
+class MemberRepositoryV5Test {
+
+    MemberRepositoryV5 repository;
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        repository = new MemberRepositoryV5(dataSource);
+    }
+
+    @AfterEach
+    void afterEach() {
+        for (int i = 0; i < 130; i++) {
+            repository.delete("batch" + i);
+        }
+        dataSource.close();
+    }
+
+    // 대량 저장 - 이미 있는 회원은 키 중복으로 결과에 담기고 나머지는 저장된다.
+    @Test
+    void saveAll() {
+        repository.save(new Member("batch2", 0));
+        repository.setBatchSize(2); // 배치 여러 개로 나눠서 실행되는지 확인
+
+        List<Member> members = List.of(
+                new Member("batch0", 1000),
+                new Member("batch1", 1000),
+                new Member("batch2", 1000),
+                new Member("batch3", 1000),
+                new Member("batch4", 1000));
+        SaveAllResult result = repository.saveAll(members);
+        log.info("result = {}", result);
+
+        assertThat(result.getSavedCount()).isEqualTo(4);
+        assertThat(result.getDuplicateIds()).containsExactly("batch2");
+        assertThat(repository.findById("batch4").getMoney()).isEqualTo(1000);
+        assertThat(repository.findById("batch2").getMoney()).isEqualTo(0); // 기존 값 그대로
+    }
+
+    // 여러 회원 조회 - 128개를 넘으면 IN 절 쿼리 여러 번으로 나눠서 조회한다.
+    @Test
+    void findAllByIds() {
+        List<Member> members = new ArrayList<>();
+        List<String> memberIds = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            members.add(new Member("batch" + i, i));
+            memberIds.add("batch" + i);
+        }
+        repository.saveAll(members);
+        memberIds.add("nobody"); // 없는 회원은 결과에서 빠진다.
+
+        Map<String, Member> result = repository.findAllByIds(memberIds);
+
+        assertThat(result).hasSize(130);
+        assertThat(result.get("batch129").getMoney()).isEqualTo(129);
+        assertThat(result).doesNotContainKey("nobody");
+    }
+
+    // 커서 조회 - 스트림을 닫으면 커넥션이 풀에 반납된다.
+    @Test
+    void streamAll() {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            members.add(new Member("batch" + i, i));
+        }
+        repository.saveAll(members);
+        repository.setFetchSize(16);
+
+        try (Stream<Member> stream = repository.streamAll(member -> member.getMemberId().startsWith("batch"))) {
+            Map<String, Integer> result = stream.collect(Collectors.toMap(Member::getMemberId, Member::getMoney));
+            assertThat(result).hasSize(130);
+            assertThat(result.get("batch77")).isEqualTo(77);
+            assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isEqualTo(1); // 스트림이 커넥션을 잡고 있다.
+        }
+        assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isEqualTo(0);
+    }
+
+    // 페이지 조회 - 마지막으로 본 id 다음부터 member_id 순서로 가져온다.
+    @Test
+    void findPage() {
+        List<Member> members = new ArrayList<>();
+        List<String> memberIds = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            members.add(new Member("batch" + i, i));
+            memberIds.add("batch" + i);
+        }
+        repository.saveAll(members);
+        Collections.sort(memberIds);
+
+        List<Member> page = repository.findPage("batch", 10);
+        assertThat(page).extracting(Member::getMemberId).containsExactlyElementsOf(memberIds.subList(0, 10));
+        List<Member> nextPage = repository.findPage(page.get(9).getMemberId(), 10);
+        assertThat(nextPage).extracting(Member::getMemberId).containsExactlyElementsOf(memberIds.subList(10, 20));
+
+        // 페이지 순회 - 전체 테이블을 16건씩 읽는다.
+        List<String> iterated = new ArrayList<>();
+        for (MemberPageIterator pages = new MemberPageIterator(repository, 16); pages.hasNext(); ) {
+            for (Member member : pages.next()) {
+                if (member.getMemberId().startsWith("batch")) {
+                    iterated.add(member.getMemberId());
+                }
+            }
+        }
+        assertThat(iterated).isEqualTo(memberIds);
+
+        // limit 0 은 빈 페이지가 되어 순회가 끝난 것처럼 보인다. 미리 막는다.
+        assertThatThrownBy(() -> repository.findPage(null, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // 낙관적 락 - 읽은 version 이 그대로일 때만 바뀌고, 바뀌면 version 이 하나 오른다.
+    @Test
+    void updateWithVersion() {
+        repository.save(new Member("batch0", 1000));
+
+        Member member = repository.findByIdWithVersion("batch0");
+        assertThat(repository.update("batch0", 2000, member.getVersion())).isTrue();
+        // 이미 지나간 version 으로는 바꿀 수 없다.
+        assertThat(repository.update("batch0", 3000, member.getVersion())).isFalse();
+
+        Member updated = repository.findByIdWithVersion("batch0");
+        assertThat(updated.getMoney()).isEqualTo(2000);
+        assertThat(updated.getVersion()).isEqualTo(member.getVersion() + 1);
+    }
+
+    // version 을 조건으로 걸지 않는 변경(adjustBalance, update)도 version 을 올린다.
+    // 그 사이에 바뀐 잔액을 낙관적 락 update 가 덮어쓰지 못한다.
+    @Test
+    void unversionedWriteBumpsVersion() {
+        repository.save(new Member("batch0", 1000));
+
+        Member member = repository.findByIdWithVersion("batch0");
+        assertThat(repository.adjustBalance("batch0", 500)).isTrue();
+        assertThat(repository.update("batch0", member.getMoney() - 100, member.getVersion())).isFalse();
+
+        Member adjusted = repository.findByIdWithVersion("batch0");
+        repository.update("batch0", 3000);
+        assertThat(repository.update("batch0", 0, adjusted.getVersion())).isFalse();
+        assertThat(repository.findById("batch0").getMoney()).isEqualTo(3000);
+    }
+}
@@ -0,0 +1,81 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * streamAll() 이 테이블 크기와 상관없이 일정한 힙만 쓰는지 확인
+ * 100만 건을 List 로 올리면 80MB 정도가 필요하다. 48MB 힙에서 끝까지 읽을 수 있어야 한다.
+ * ./gradlew boundedHeapTest 로 실행한다. (기본 test 태스크에서는 제외)
+ */
+@Slf4j
+@Tag("bounded-heap")
+class MemberStreamBoundedHeapTest {
+
+    static final int ROWS = 1_000_000;
+    static final long MAX_HEAP = 64L * 1024 * 1024;
+
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        assumeTrue(Runtime.getRuntime().maxMemory() <= MAX_HEAP, "boundedHeapTest 태스크에서만 의미가 있다.");
+
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        // 한 번에 다 만들면 그 자체로 힙이 넘치므로 나눠서 저장한다.
+        MemberRepositoryV4_2 repository = new MemberRepositoryV4_2(dataSource);
+        List<Member> members = new ArrayList<>(10_000);
+        for (int i = 0; i < ROWS; i++) {
+            members.add(new Member("heap" + i, 1));
+            if (members.size() == 10_000) {
+                repository.saveAll(members);
+                members.clear();
+            }
+        }
+    }
+
+    @AfterEach
+    void afterEach() {
+        if (dataSource != null) {
+            new JdbcTemplate(dataSource).update("delete from member where member_id like 'heap%'");
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void streamAllV4_2() {
+        assertStreamsAllRows(new MemberRepositoryV4_2(dataSource));
+    }
+
+    @Test
+    void streamAllV5() {
+        assertStreamsAllRows(new MemberRepositoryV5(dataSource));
+    }
+
+    private void assertStreamsAllRows(MemberRepository repository) {
+        long sum;
+        try (Stream<Member> stream = repository.streamAll(member -> member.getMemberId().startsWith("heap"))) {
+            sum = stream.mapToLong(Member::getMoney).sum();
+        }
+        log.info("maxMemory = {}MB, rows = {}", Runtime.getRuntime().maxMemory() / 1024 / 1024, sum);
+        assertThat(sum).isEqualTo(ROWS);
+    }
+}
@@ -0,0 +1,124 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static hello.jdbc.connection.ConnectionConst.PASSWORD;
+import static hello.jdbc.connection.ConnectionConst.USERNAME;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 샤딩 테스트 - 메모리 H2 DB 세 개를 샤드로 쓴다.
+ */
+@Slf4j
+class ShardedMemberRepositoryTest {
+
+    List<DataSource> dataSources = new ArrayList<>();
+    ExecutorService executor;
+    ShardedMemberRepository repository;
+
+    @BeforeEach
+    void beforeEach() {
+        for (int i = 0; i < 4; i++) {
+            DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:shard" + i + ";DB_CLOSE_DELAY=-1", USERNAME, PASSWORD);
+            JdbcTemplate template = new JdbcTemplate(dataSource);
+            template.execute("create table if not exists member (member_id varchar(10), money integer not null default 0, version bigint not null default 0, primary key (member_id))");
+            template.update("delete from member");
+            dataSources.add(dataSource);
+        }
+        executor = Executors.newFixedThreadPool(4);
+        repository = new ShardedMemberRepository(dataSources.subList(0, 3), executor);
+    }
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdown();
+    }
+
+    @Test
+    void crud() {
+        Member member = new Member("memberV0", 10000);
+        repository.save(member);
+
+        // 샤드 하나에만 저장된다.
+        int shard = repository.shardIndex(member.getMemberId());
+        for (int i = 0; i < 3; i++) {
+            assertThat(count(i)).isEqualTo(i == shard ? 1 : 0);
+        }
+
+        assertThat(repository.findById(member.getMemberId())).isEqualTo(member);
+        repository.update(member.getMemberId(), 20000);
+        assertThat(repository.adjustBalance(member.getMemberId(), -5000)).isTrue();
+        assertThat(repository.findById(member.getMemberId()).getMoney()).isEqualTo(15000);
+        repository.delete(member.getMemberId());
+        assertThat(count(shard)).isZero();
+    }
+
+    @Test
+    void fanOut() {
+        repository.save(new Member("m2", 0));
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            members.add(new Member("m" + i, i));
+        }
+
+        SaveAllResult result = repository.saveAll(members);
+        assertThat(result.getSavedCount()).isEqualTo(299);
+        assertThat(result.getDuplicateIds()).containsExactly("m2");
+
+        // 세 샤드에 고르게 나뉜다.
+        for (int i = 0; i < 3; i++) {
+            log.info("shard{} count={}", i, count(i));
+            assertThat(count(i)).isBetween(50, 150);
+        }
+
+        Map<String, Member> found = repository.findAllByIds(List.of("m0", "m100", "m299", "none"));
+        assertThat(found).containsOnlyKeys("m0", "m100", "m299");
+        assertThat(found.get("m100").getMoney()).isEqualTo(100);
+
+        try (Stream<Member> stream = repository.streamAll()) {
+            assertThat(stream.count()).isEqualTo(300);
+        }
+
+        List<String> expected = members.stream().map(Member::getMemberId).sorted().collect(Collectors.toList());
+        List<String> paged = new ArrayList<>();
+        new MemberPageIterator(repository, 40).forEachRemaining(page -> page.forEach(m -> paged.add(m.getMemberId())));
+        assertThat(paged).isEqualTo(expected);
+    }
+
+    // 샤드를 하나 늘리면 약 1/4 만 옮겨지고, 옮겨지는 회원은 모두 새 샤드로 간다.
+    @Test
+    void consistentHashing() {
+        ShardedMemberRepository grown = new ShardedMemberRepository(dataSources, executor);
+        int moved = 0;
+        for (int i = 0; i < 10000; i++) {
+            String memberId = "m" + i;
+            int before = repository.shardIndex(memberId);
+            int after = grown.shardIndex(memberId);
+            if (before != after) {
+                moved++;
+                assertThat(after).isEqualTo(3);
+            }
+        }
+        log.info("moved={}/10000", moved);
+        assertThat(moved).isBetween(1500, 3500);
+    }
+
+    private int count(int shard) {
+        return new JdbcTemplate(dataSources.get(shard)).queryForObject("select count(*) from member", Integer.class);
+    }
+}
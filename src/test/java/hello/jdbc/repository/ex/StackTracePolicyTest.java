@@ -0,0 +1,92 @@
+package hello.jdbc.repository.ex;
+
+import hello.jdbc.repository.ExceptionTranslatorRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.SQLException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 예상된 데이터 접근 예외의 스택 트레이스 정책
+ */
+class StackTracePolicyTest {
+
+    SQLException cause = new SQLException("dup", "23505", 23505);
+
+    @AfterEach
+    void afterEach() {
+        StackTracePolicy.setMode(StackTracePolicy.Mode.FULL);
+        StackTracePolicy.setSampleRate(100);
+    }
+
+    @Test
+    void full() {
+        assertThat(new MyDbException(cause).getStackTrace()).isNotEmpty();
+        assertThat(new MyDuplicateKeyException(cause).getStackTrace()).isNotEmpty();
+    }
+
+    @Test
+    void none() {
+        StackTracePolicy.setMode(StackTracePolicy.Mode.NONE);
+
+        MyDuplicateKeyException e = new MyDuplicateKeyException("키 중복", cause);
+        assertThat(e.getStackTrace()).isEmpty();
+        // 메시지와 원인은 그대로 남는다.
+        assertThat(e.getMessage()).isEqualTo("키 중복");
+        assertThat(e.getCause()).isSameAs(cause);
+    }
+
+    @Test
+    void sampled() {
+        StackTracePolicy.setMode(StackTracePolicy.Mode.SAMPLED);
+        StackTracePolicy.setSampleRate(10);
+
+        int withTrace = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (new MyDbException(cause).getStackTrace().length > 0) {
+                withTrace++;
+            }
+        }
+        // 10 번에 한 번 정도
+        assertThat(withTrace).isBetween(500, 2000);
+    }
+
+    @Test
+    void shared() {
+        MyDuplicateKeyException e = MyDuplicateKeyException.shared();
+        e.addSuppressed(new IllegalStateException()); // 무시된다.
+        e.setStackTrace(new Thread().getStackTrace()); // 무시된다.
+
+        assertThat(MyDuplicateKeyException.shared()).isSameAs(e);
+        assertThat(e.getStackTrace()).isEmpty();
+        assertThat(e.getSuppressed()).isEmpty();
+        assertThat(e.getCause()).isNull();
+    }
+
+    @Test
+    void translatedDuplicateKey() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        StackTracePolicy.setMode(StackTracePolicy.Mode.NONE);
+
+        DataAccessException e = ExceptionTranslatorRegistry.shared().translator(dataSource).translate("save", null, cause);
+        assertThat(e).isInstanceOf(DuplicateKeyException.class);
+        assertThat(e.getStackTrace()).isEmpty();
+        assertThat(e.getCause()).isSameAs(cause);
+    }
+
+    // 시스템 프로퍼티를 잘못 적어도 클래스 초기화가 실패하지 않는다.
+    @Test
+    void invalidProperties() {
+        assertThat(StackTracePolicy.parseMode("Sampled")).isEqualTo(StackTracePolicy.Mode.SAMPLED);
+        assertThat(StackTracePolicy.parseMode("sampeld")).isEqualTo(StackTracePolicy.Mode.FULL);
+        assertThat(StackTracePolicy.parseSampleRate(0)).isEqualTo(1);
+        assertThat(StackTracePolicy.parseSampleRate(-5)).isEqualTo(1);
+        assertThat(StackTracePolicy.parseSampleRate(100)).isEqualTo(100);
+    }
+}
@@ -0,0 +1,144 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 그룹 커밋 계좌이체
+ */
+class GroupCommitTransferExecutorTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    private HikariDataSource dataSource;
+    private MemberRepositoryV5 memberRepository;
+    private GroupCommitTransferExecutor executor;
+
+    @BeforeEach
+    void before() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        executor = new GroupCommitTransferExecutor(new DataSourceTransactionManager(dataSource), memberRepository,
+                32, Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    void after() {
+        executor.close();
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("정상 이체")
+    void accountTransfer() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        executor.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    // 한 그룹 안에서 실패한 이체만 되돌리고 나머지는 커밋된다.
+    @Test
+    @DisplayName("그룹 안의 실패는 그 요청만 롤백")
+    void failureIsolatedBySavepoint() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        List<CompletableFuture<Void>> ok = new ArrayList<>();
+        List<CompletableFuture<Void>> failed = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ok.add(executor.submit(MEMBER_A, MEMBER_B, 10));
+            failed.add(executor.submit(MEMBER_A, MEMBER_EX, 10)); // 출금 후 검증에서 실패
+        }
+        failed.add(executor.submit(MEMBER_B, MEMBER_A, 1_000_000)); // 잔액 부족
+
+        CompletableFuture.allOf(ok.toArray(new CompletableFuture<?>[0])).join();
+        for (CompletableFuture<Void> future : failed) {
+            assertThatThrownBy(future::join).isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        }
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000 - 500);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000 + 500);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+        // 한꺼번에 들어온 요청은 여러 건씩 묶여서 커밋된다.
+        assertThat(executor.getRequestCount()).isEqualTo(101);
+        assertThat(executor.getAverageGroupSize()).isGreaterThan(1);
+    }
+
+    @Test
+    @DisplayName("0 이하 금액, 같은 계좌는 큐에 넣기 전에 거절")
+    void invalidRequest() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        assertThatThrownBy(() -> executor.submit(MEMBER_A, MEMBER_B, -2000)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> executor.submit(MEMBER_A, MEMBER_B, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> executor.submit(MEMBER_A, MEMBER_A, 100)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(executor.getRequestCount()).isZero();
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("닫은 뒤의 요청은 실패")
+    void submitAfterClose() {
+        executor.close();
+
+        assertThatThrownBy(() -> executor.accountTransfer(MEMBER_A, MEMBER_B, 10))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    // 커밋 스레드가 Error 로 죽어도 기다리는 쪽이 멈추지 않는다.
+    @Test
+    @DisplayName("커밋 스레드가 죽으면 남은 요청은 실패")
+    void committerDies() throws Exception {
+        executor.close();
+        MemberRepositoryV5 broken = new MemberRepositoryV5(dataSource) {
+            @Override
+            public boolean adjustBalance(String memberId, int delta) {
+                throw new StackOverflowError("broken");
+            }
+        };
+        executor = new GroupCommitTransferExecutor(new DataSourceTransactionManager(dataSource), broken,
+                32, Duration.ofMillis(10));
+
+        CompletableFuture<Void> first = executor.submit(MEMBER_A, MEMBER_B, 10);
+        CompletableFuture<Void> second = executor.submit(MEMBER_A, MEMBER_B, 10);
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+        assertThatThrownBy(() -> executor.accountTransfer(MEMBER_A, MEMBER_B, 10))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,192 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.InMemoryMemberRepository;
+import hello.jdbc.repository.InMemoryTransactionManager;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.UnexpectedRollbackException;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * MemberServiceV4Test 와 같은 테스트를 InMemoryMemberRepository 로 돌린다.
+ * 스프링 부트도 DB 도 띄우지 않는다. 트랜잭션 프록시는 직접 만들고, 트랜잭션 매니저는 DataSource 가 필요 없는
+ * InMemoryTransactionManager 를 쓴다. 리포지토리는 트랜잭션 동기화에 참여해서 롤백되면 변경을 되돌린다.
+ */
+@Slf4j
+class MemberServiceV4InMemoryTest {
+
+    // 상수 몇가지 정리
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    private MemberRepository memberRepository;
+    private MemberServiceV4 memberService;
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void before() {
+        memberRepository = new InMemoryMemberRepository();
+        transactionManager = new InMemoryTransactionManager();
+        // @Transactional 을 읽어서 트랜잭션을 거는 프록시
+        TransactionInterceptor interceptor = new TransactionInterceptor();
+        interceptor.setTransactionManager(transactionManager);
+        interceptor.setTransactionAttributeSource(new AnnotationTransactionAttributeSource());
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(memberRepository));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(interceptor);
+        memberService = (MemberServiceV4) proxyFactory.getProxy();
+    }
+
+    // 리소스 정리 - 메모리에 저장된 값 삭제(초기화)
+    @AfterEach // 각각이 테스트가 끝난 후에 호출
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    // 프록시 적용 되었는지 확인
+    @Test
+    void AopCheck() {
+        // memberService, memberRepository 클래스 정보 확인
+        log.info("memberService class = {}", memberService.getClass());
+        log.info("memberRepository class = {}", memberRepository.getClass());
+        // 테스트를 위와 같이 눈으로만 확인할 수 없다.
+        assertThat(AopUtils.isAopProxy(memberService)).isTrue(); // AopProxy인지 물어본다.
+        assertThat(AopUtils.isAopProxy(memberRepository)).isFalse();
+    }
+
+    // 정상 이체 로직 작성
+    @Test
+    @DisplayName("정상 이체") // 테스트 실행 시 나오는 이름
+    void accountTransfer() {
+        // given
+        Member memberA = new Member(MEMBER_A, 10000);
+        Member memberB = new Member(MEMBER_B, 10000);
+        memberRepository.save(memberA); // DB에 저장
+        memberRepository.save(memberB); // DB에 저장
+
+        // when / memberA 돈을 memberB에게 2000원 이체한다.
+        log.info("START TX"); // accountTransfer() 여기서는 같은 커넥션을 쓴다. 같은 커넥션이 내부에서 재사용된다.
+        memberService.accountTransfer(memberA.getMemberId(), memberB.getMemberId(), 2000);
+        log.info("END TX"); // accountTransfer() 여기서는 같은 커넥션을 쓴다.
+
+        // then / 검증
+        Member findMemberA = memberRepository.findById(memberA.getMemberId());
+        Member findMemberB = memberRepository.findById(memberB.getMemberId());
+        assertThat(findMemberA.getMoney()).isEqualTo(8000);
+        assertThat(findMemberB.getMoney()).isEqualTo(12000);
+    }
+
+    // 이체중 예외 발생
+    // memberA 가 이체하는 중 예외가 발생해서 rollback이 된다.
+    @Test
+    @DisplayName("이체중 예외 발생")
+    void accountTransferEx() {
+        // given
+        Member memberA = new Member(MEMBER_A, 10000);
+        Member memberEx = new Member(MEMBER_EX, 10000);
+        memberRepository.save(memberA);
+        memberRepository.save(memberEx);
+
+        // when
+        // 검증에서 예외가 터지는 걸 검증해야 한다.
+        // memberService.accountTransfer()를 수행한 결과가 예외가 터져서 IllegalStateException가 되면 성공
+        // 트랜잭션이 없으면 기본적으로 autocommit으로 돈다.
+        assertThatThrownBy(() -> memberService.accountTransfer(memberA.getMemberId(), memberEx.getMemberId(), 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        Member findMemberA = memberRepository.findById(memberA.getMemberId());
+        Member findMemberEx = memberRepository.findById(memberEx.getMemberId());
+        assertThat(findMemberA.getMoney()).isEqualTo(10000);
+        assertThat(findMemberEx.getMoney()).isEqualTo(10000);
+    }
+
+    // 조회 없이 상대값으로 이체
+    @Test
+    @DisplayName("정상 이체 - 상대값 변경")
+    void accountTransferAtomic() {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when
+        memberService.accountTransferAtomic(MEMBER_A, MEMBER_B, 2000);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    // 잔액보다 많이 보내면 아무것도 바뀌지 않는다.
+    @Test
+    @DisplayName("잔액 부족 - 상대값 변경")
+    void accountTransferAtomicOverdraft() {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 1000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when
+        assertThatThrownBy(() -> memberService.accountTransferAtomic(MEMBER_A, MEMBER_B, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    // 이체중 예외가 발생하면 먼저 뺀 금액도 롤백된다.
+    @Test
+    @DisplayName("이체중 예외 발생 - 상대값 변경")
+    void accountTransferAtomicEx() {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        // when
+        assertThatThrownBy(() -> memberService.accountTransferAtomic(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    // 바깥 트랜잭션에 참여한 이체가 실패하면 서비스의 예외가 그대로 나오고, 바깥 트랜잭션은 커밋하지 못하고 전부 롤백된다.
+    @Test
+    @DisplayName("안쪽 트랜잭션 실패 - 바깥 트랜잭션까지 롤백")
+    void nestedFailureMarksRollbackOnly() {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+
+        // when
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> {
+            memberService.accountTransferAtomic(MEMBER_A, MEMBER_B, 1000);
+            assertThatThrownBy(() -> memberService.accountTransferAtomic(MEMBER_A, MEMBER_EX, 2000))
+                    .isInstanceOf(IllegalStateException.class); // 트랜잭션 매니저 예외로 바뀌지 않는다.
+        })).isInstanceOf(UnexpectedRollbackException.class);
+
+        // then - 먼저 성공한 이체까지 롤백
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+}
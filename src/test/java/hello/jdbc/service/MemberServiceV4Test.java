@@ -14,6 +14,7 @@ import org.springframework.context.annotation.Bean;
 
 import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -148,4 +149,116 @@ class MemberServiceV4Test {
         assertThat(findMemberA.getMoney()).isEqualTo(10000);
         assertThat(findMemberEx.getMoney()).isEqualTo(10000);
     }
-}
\ No newline at end of file
+
+    // 조회 없이 상대값으로 이체
+    @Test
+    @DisplayName("정상 이체 - 상대값 변경")
+    void accountTransferAtomic() {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when
+        memberService.accountTransferAtomic(MEMBER_A, MEMBER_B, 2000);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    // 잔액보다 많이 보내면 아무것도 바뀌지 않는다.
+    @Test
+    @DisplayName("잔액 부족 - 상대값 변경")
+    void accountTransferAtomicOverdraft() {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 1000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when
+        assertThatThrownBy(() -> memberService.accountTransferAtomic(MEMBER_A, MEMBER_B, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    // 0 이하의 금액은 잔액을 바꾸기 전에 거절한다. (음수면 받는 쪽의 돈을 가져온다.)
+    @Test
+    @DisplayName("0 이하 금액 - 상대값 변경")
+    void accountTransferAtomicNonPositive() {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when
+        assertThatThrownBy(() -> memberService.accountTransferAtomic(MEMBER_A, MEMBER_B, -2000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberService.accountTransferAtomic(MEMBER_A, MEMBER_B, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    // 이체중 예외가 발생하면 먼저 뺀 금액도 롤백된다.
+    @Test
+    @DisplayName("이체중 예외 발생 - 상대값 변경")
+    void accountTransferAtomicEx() {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        // when
+        assertThatThrownBy(() -> memberService.accountTransferAtomic(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    // 락 순서 이체 - A->B, B->A 를 동시에 반복해도 교착 상태나 갱신 손실이 없다.
+    @Test
+    @DisplayName("정상 이체 - 락 순서 고정, 양방향 동시 이체")
+    void accountTransferOrdered() {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when - A->B 는 10원씩, B->A 는 1원씩 200번
+        CompletableFuture<Void> aToB = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 200; i++) {
+                memberService.accountTransferOrdered(MEMBER_A, MEMBER_B, 10);
+            }
+        });
+        CompletableFuture<Void> bToA = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 200; i++) {
+                memberService.accountTransferOrdered(MEMBER_B, MEMBER_A, 1);
+            }
+        });
+        CompletableFuture.allOf(aToB, bToA).join(); // 하나라도 실패하면 예외가 난다.
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000 - 2000 + 200);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000 + 2000 - 200);
+    }
+
+    // 락 순서 이체도 중간에 예외가 나면 롤백된다.
+    @Test
+    @DisplayName("이체중 예외 발생 - 락 순서 고정")
+    void accountTransferOrderedEx() {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        // when
+        assertThatThrownBy(() -> memberService.accountTransferOrdered(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+}
@@ -0,0 +1,132 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.VersionedMemberRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 낙관적 락 + 재시도 계좌이체
+ */
+class OptimisticTransferExecutorTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    private HikariDataSource dataSource;
+    private DataSourceTransactionManager transactionManager;
+    private MemberRepositoryV5 memberRepository;
+
+    @BeforeEach
+    void before() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("정상 이체")
+    void accountTransfer() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        OptimisticTransferExecutor executor = new OptimisticTransferExecutor(transactionManager, memberRepository);
+
+        executor.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+        assertThat(executor.getConflictCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("이체중 예외 발생 - 재시도하지 않고 롤백")
+    void accountTransferEx() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+        OptimisticTransferExecutor executor = new OptimisticTransferExecutor(transactionManager, memberRepository);
+
+        assertThatThrownBy(() -> executor.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+        assertThat(executor.getRetryCount()).isZero();
+    }
+
+    // 양방향으로 동시에 이체해도 충돌한 이체는 다시 시도해서 금액이 맞는다.
+    @Test
+    @DisplayName("동시 이체 - 충돌하면 재시도")
+    void concurrentTransfer() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        OptimisticTransferExecutor executor = new OptimisticTransferExecutor(transactionManager, memberRepository,
+                100, Duration.ofMillis(1), Duration.ofMillis(20));
+
+        CompletableFuture<Void> aToB = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 100; i++) {
+                executor.accountTransfer(MEMBER_A, MEMBER_B, 10);
+            }
+        });
+        CompletableFuture<Void> bToA = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 100; i++) {
+                executor.accountTransfer(MEMBER_B, MEMBER_A, 1);
+            }
+        });
+        CompletableFuture.allOf(aToB, bToA).join();
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000 - 1000 + 100);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000 + 1000 - 100);
+        assertThat(executor.getExhaustedCount()).isZero();
+    }
+
+    // 매번 충돌하면 maxAttempts 번 시도하고 포기한다.
+    @Test
+    @DisplayName("재시도 한도 초과")
+    void retryBudgetExhausted() {
+        VersionedMemberRepository alwaysConflict = new VersionedMemberRepository() {
+            @Override
+            public Member findByIdWithVersion(String memberId) {
+                return new Member(memberId, 10000, 0L);
+            }
+
+            @Override
+            public boolean update(String memberId, int money, long version) {
+                return false;
+            }
+        };
+        OptimisticTransferExecutor executor = new OptimisticTransferExecutor(transactionManager, alwaysConflict,
+                3, Duration.ZERO, Duration.ZERO);
+
+        assertThatThrownBy(() -> executor.accountTransfer(MEMBER_A, MEMBER_B, 2000))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(executor.getConflictCount()).isEqualTo(3);
+        assertThat(executor.getRetryCount()).isEqualTo(2);
+        assertThat(executor.getExhaustedCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,104 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 계좌이체 상계 정산
+ */
+@SpringBootTest
+class TransferNettingServiceTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_C = "memberC";
+
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private TransferNettingService nettingService;
+
+    @TestConfiguration
+    static class TestConfig {
+
+        private final DataSource dataSource;
+
+        public TestConfig(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource);
+        }
+
+        @Bean
+        TransferNettingService transferNettingService() {
+            return new TransferNettingService(memberRepository());
+        }
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_C);
+    }
+
+    // A->B 100, B->A 30, A->C 10 은 계좌별 순변동액 세 건으로 반영된다.
+    @Test
+    @DisplayName("상계 정산")
+    void settle() {
+        memberRepository.save(new Member(MEMBER_A, 1000));
+        memberRepository.save(new Member(MEMBER_B, 1000));
+        memberRepository.save(new Member(MEMBER_C, 1000));
+
+        TransferBatchResult result = nettingService.settle(List.of(
+                new Transfer(MEMBER_A, MEMBER_B, 100),
+                new Transfer(MEMBER_B, MEMBER_A, 30),
+                new Transfer(MEMBER_A, MEMBER_C, 10)));
+
+        assertThat(result.getAcceptedCount()).isEqualTo(3);
+        assertThat(result.getRejected()).isEmpty();
+        assertThat(result.getUpdatedAccountCount()).isEqualTo(3);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(920);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(1070);
+        assertThat(memberRepository.findById(MEMBER_C).getMoney()).isEqualTo(1010);
+    }
+
+    // 앞선 이체로 받은 돈은 보낼 수 있고, 잔액을 넘는 이체와 없는 계좌로의 이체는 거절된다.
+    @Test
+    @DisplayName("잔액 부족, 없는 계좌는 거절")
+    void settleRejects() {
+        memberRepository.save(new Member(MEMBER_A, 100));
+        memberRepository.save(new Member(MEMBER_B, 0));
+
+        Transfer overdraft = new Transfer(MEMBER_B, MEMBER_A, 200);
+        Transfer unknown = new Transfer(MEMBER_A, "nobody", 10);
+        TransferBatchResult result = nettingService.settle(List.of(
+                new Transfer(MEMBER_A, MEMBER_B, 100),
+                new Transfer(MEMBER_B, MEMBER_A, 50), // 바로 앞에서 받은 돈
+                overdraft,
+                unknown));
+
+        assertThat(result.getAcceptedCount()).isEqualTo(2);
+        assertThat(result.getRejected()).extracting(TransferBatchResult.Rejected::getTransfer)
+                .containsExactly(overdraft, unknown);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(50);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(50);
+    }
+}
@@ -0,0 +1,187 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.LatencyHistogram;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Random;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 일시적 실패 재시도 - 리포지토리 호출에 락 획득 실패, 교착 상태 예외를 일정 확률로 끼워 넣는다.
+ * 서비스 프록시는 재시도 -> 트랜잭션 -> MemberServiceV4 순서로 호출한다.
+ */
+@Slf4j
+class TransientRetryInterceptorTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    private HikariDataSource dataSource;
+    private MemberRepositoryV5 memberRepository;
+    private FaultInjector faultInjector;
+
+    @BeforeEach
+    void before() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        faultInjector = new FaultInjector(memberRepository);
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("실패 주입 - 재시도로 대부분 성공하고 돈은 그대로 보존된다")
+    void faultInjection() {
+        memberRepository.save(new Member(MEMBER_A, 100000));
+        memberRepository.save(new Member(MEMBER_B, 100000));
+        faultInjector.faultRate = 0.05; // 리포지토리 호출 20번에 한 번 실패, 이체 한 번에 4번 호출한다.
+
+        TransientRetryInterceptor retry = new TransientRetryInterceptor(5, Duration.ofMillis(1), Duration.ofMillis(10),
+                new RetryBudget(0.5, 100));
+        MemberServiceV4 memberService = service(retry);
+
+        int transfers = 300;
+        int succeeded = 0;
+        LatencyHistogram latency = new LatencyHistogram();
+        for (int i = 0; i < transfers; i++) {
+            String from = i % 2 == 0 ? MEMBER_A : MEMBER_B;
+            String to = i % 2 == 0 ? MEMBER_B : MEMBER_A;
+            long start = System.nanoTime();
+            try {
+                memberService.accountTransfer(from, to, 100);
+                succeeded++;
+            } catch (CannotAcquireLockException | DeadlockLoserDataAccessException e) {
+                // 재시도를 다 쓰고 실패
+            }
+            latency.record(System.nanoTime() - start);
+        }
+
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        double successRate = (double) succeeded / transfers;
+        log.info("success rate = {}%, injected faults = {}, retries = {}, exhausted = {}, budget exhausted = {}",
+                successRate * 100, faultInjector.injected, retry.getRetryCount(),
+                retry.getAttemptsExhaustedCount(), retry.getBudgetExhaustedCount());
+        log.info("latency (us) p50 = {}, p99 = {}, max = {}", snapshot.getValueAtPercentile(50) / 1000,
+                snapshot.getValueAtPercentile(99) / 1000, snapshot.getMax() / 1000);
+
+        assertThat(faultInjector.injected).isPositive();
+        assertThat(retry.getRetryCount()).isPositive();
+        assertThat(successRate).isGreaterThan(0.99);
+        // 실패한 시도는 롤백되었으므로 두 계좌의 합은 그대로다.
+        int total = memberRepository.findById(MEMBER_A).getMoney() + memberRepository.findById(MEMBER_B).getMoney();
+        assertThat(total).isEqualTo(200000);
+    }
+
+    @Test
+    @DisplayName("계속 실패하면 재시도 예산을 넘지 않는다")
+    void retryBudget() {
+        memberRepository.save(new Member(MEMBER_A, 100000));
+        memberRepository.save(new Member(MEMBER_B, 100000));
+        faultInjector.faultRate = 1;
+
+        TransientRetryInterceptor retry = new TransientRetryInterceptor(5, Duration.ofNanos(1000), Duration.ofNanos(1000),
+                new RetryBudget(0.1, 10));
+        MemberServiceV4 memberService = service(retry);
+
+        int calls = 100;
+        for (int i = 0; i < calls; i++) {
+            assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_B, 100))
+                    .isInstanceOfAny(CannotAcquireLockException.class, DeadlockLoserDataAccessException.class);
+        }
+
+        // 예산이 없으면 호출마다 4번씩 재시도해서 400번이 된다. 처음 10번 + 호출당 0.1번까지만 허용한다.
+        log.info("retries = {}, budget exhausted = {}", retry.getRetryCount(), retry.getBudgetExhaustedCount());
+        assertThat(retry.getRetryCount()).isLessThanOrEqualTo(10 + calls / 10);
+        assertThat(retry.getBudgetExhaustedCount()).isPositive();
+    }
+
+    @Test
+    @DisplayName("일시적 실패가 아니면 재시도하지 않는다")
+    void notTransient() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        TransientRetryInterceptor retry = new TransientRetryInterceptor();
+        MemberServiceV4 memberService = service(retry);
+
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(retry.getRetryCount()).isZero();
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+    // 재시도 어드바이스를 트랜잭션 어드바이스보다 먼저 넣어서 시도마다 새 트랜잭션이 열리게 한다.
+    private MemberServiceV4 service(TransientRetryInterceptor retry) {
+        MemberRepository repository = (MemberRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MemberRepository.class}, faultInjector);
+        TransactionInterceptor txInterceptor = new TransactionInterceptor();
+        txInterceptor.setTransactionManager(new DataSourceTransactionManager(dataSource));
+        txInterceptor.setTransactionAttributeSource(new AnnotationTransactionAttributeSource());
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(repository));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(retry);
+        proxyFactory.addAdvice(txInterceptor);
+        return (MemberServiceV4) proxyFactory.getProxy();
+    }
+
+    // faultRate 확률로 리포지토리 호출 대신 락 획득 실패나 교착 상태 예외를 던진다.
+    static class FaultInjector implements InvocationHandler {
+
+        private final MemberRepository target;
+        private final Random random = new Random(42);
+        private double faultRate;
+        private int injected;
+
+        FaultInjector(MemberRepository target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (random.nextDouble() < faultRate) {
+                injected++;
+                if (random.nextBoolean()) {
+                    throw new CannotAcquireLockException("injected lock timeout");
+                }
+                throw new DeadlockLoserDataAccessException("injected deadlock", null);
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}